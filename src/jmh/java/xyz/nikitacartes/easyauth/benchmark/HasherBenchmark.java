@@ -0,0 +1,64 @@
+package xyz.nikitacartes.easyauth.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.nikitacartes.easyauth.EasyAuth;
+import xyz.nikitacartes.easyauth.storage.AuthConfig;
+import xyz.nikitacartes.easyauth.utils.hashing.Hasher;
+import xyz.nikitacartes.easyauth.utils.hashing.HasherRegistry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares password verification of all registered hashers with default config parameters.
+ * <p>
+ * Throughput is per thread, so running with {@code -t <cores>} gives verifications per second per core.
+ * Heap memory per verification is reported by the gc profiler ({@code gc.alloc.rate.norm}),
+ * native memory shows in peak RSS, printed at the end of each fork.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class HasherBenchmark {
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"argon2", "argon2-java", "bcrypt", "scrypt", "pbkdf2"})
+    public String hasher;
+
+    private Hasher instance;
+    private String hashed;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        EasyAuth.config = new AuthConfig();
+        if(this.hasher.equals("argon2-java")) {
+            EasyAuth.config.experimental.useJavaArgon2 = true;
+            EasyAuth.config.experimental.passwordHasher = "argon2";
+        }
+        else
+            EasyAuth.config.experimental.passwordHasher = this.hasher;
+
+        this.instance = HasherRegistry.resolve(EasyAuth.config);
+        this.hashed = this.instance.hash(PASSWORD.toCharArray());
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return this.instance.verify(PASSWORD.toCharArray(), this.hashed);
+    }
+
+    @TearDown(Level.Trial)
+    public void printPeakRss() throws IOException {
+        Path status = Path.of("/proc/self/status");
+        if(!Files.isReadable(status))
+            return;
+        Files.readAllLines(status).stream()
+                .filter(line -> line.startsWith("VmHWM") || line.startsWith("VmRSS"))
+                .forEach(line -> System.out.println("\n" + line));
+    }
+}
@@ -0,0 +1,96 @@
+package xyz.nikitacartes.easyauth.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.nikitacartes.easyauth.EasyAuth;
+import xyz.nikitacartes.easyauth.storage.AuthConfig;
+import xyz.nikitacartes.easyauth.storage.PlayerCache;
+import xyz.nikitacartes.easyauth.storage.database.LevelDB;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures LevelDB operations with different number of registered accounts.
+ * <p>
+ * Database is created in a temporary game directory and filled before measuring,
+ * {@link #saveFromCache()} writes {@value #BATCH_SIZE} players, as done when the server saves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LevelDBBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"10000", "100000", "1000000"})
+    public int accounts;
+
+    private String[] uuids;
+    private String data;
+    private HashMap<String, PlayerCache> batch;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        EasyAuth.config = new AuthConfig();
+        EasyAuth.gameDirectory = Files.createTempDirectory("easyauth-bench");
+        Files.createDirectories(EasyAuth.gameDirectory.resolve("mods/EasyAuth"));
+        LevelDB.initialize();
+
+        PlayerCache cache = new PlayerCache();
+        cache.password = "$argon2id$v=19$m=65536,t=10,p=1$c29tZXNhbHRzb21lc2FsdA$aGFzaGhhc2hoYXNoaGFzaGhhc2hoYXNoaGFzaGhhc2g";
+        this.data = cache.toJson();
+
+        this.uuids = new String[this.accounts];
+        HashMap<String, PlayerCache> fill = new HashMap<>();
+        for (int i = 0; i < this.accounts; i++) {
+            this.uuids[i] = UUID.randomUUID().toString();
+            fill.put(this.uuids[i], cache);
+            if(fill.size() == 10000) {
+                LevelDB.saveFromCache(fill);
+                fill.clear();
+            }
+        }
+        LevelDB.saveFromCache(fill);
+
+        this.batch = new HashMap<>();
+        for (int i = 0; i < BATCH_SIZE; i++)
+            this.batch.put(this.uuids[i], cache);
+    }
+
+    @Benchmark
+    public String getUserData() {
+        return LevelDB.getUserData(this.uuids[ThreadLocalRandom.current().nextInt(this.accounts)]);
+    }
+
+    @Benchmark
+    public boolean isUserRegisteredMissing() {
+        return LevelDB.isUserRegistered(UUID.randomUUID().toString());
+    }
+
+    @Benchmark
+    public void updateUserData() {
+        LevelDB.updateUserData(this.uuids[ThreadLocalRandom.current().nextInt(this.accounts)], this.data);
+    }
+
+    @Benchmark
+    public void saveFromCache() {
+        LevelDB.saveFromCache(this.batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        LevelDB.close();
+        try (Stream<Path> files = Files.walk(EasyAuth.gameDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package xyz.nikitacartes.easyauth.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.nikitacartes.easyauth.EasyAuth;
+import xyz.nikitacartes.easyauth.storage.AuthConfig;
+import xyz.nikitacartes.easyauth.storage.PlayerCache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures serialization of player's cache to and from the JSON stored in DB.
+ * Allocation per operation is reported by the gc profiler ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlayerCacheBenchmark {
+    private PlayerCache cache;
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        EasyAuth.config = new AuthConfig();
+        this.cache = new PlayerCache();
+        this.cache.password = "$argon2id$v=19$m=65536,t=10,p=1$c29tZXNhbHRzb21lc2FsdA$aGFzaGhhc2hoYXNoaGFzaGhhc2hoYXNoaGFzaGhhc2g";
+        this.cache.isAuthenticated = true;
+        this.cache.lastIp = "127.0.0.1";
+        this.cache.validUntil = System.currentTimeMillis();
+        this.json = this.cache.toJson();
+    }
+
+    @Benchmark
+    public String toJson() {
+        return this.cache.toJson();
+    }
+
+    @Benchmark
+    public PlayerCache fromJson() {
+        return PlayerCache.fromJson(this.json);
+    }
+}
@@ -0,0 +1,162 @@
+package xyz.nikitacartes.easyauth.benchmark;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.ItemStack;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.LiteralText;
+import net.minecraft.text.Text;
+import net.minecraft.util.ActionResult;
+import net.minecraft.util.TypedActionResult;
+import org.openjdk.jmh.annotations.*;
+import sun.misc.Unsafe;
+import xyz.nikitacartes.easyauth.EasyAuth;
+import xyz.nikitacartes.easyauth.event.AuthEventHandler;
+import xyz.nikitacartes.easyauth.storage.AuthConfig;
+import xyz.nikitacartes.easyauth.storage.AuthPolicy;
+import xyz.nikitacartes.easyauth.utils.PlayerAuth;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures checks done by {@link AuthEventHandler} on every packet of a player,
+ * for both authenticated and not authenticated players.
+ * <p>
+ * Handlers are called on a stub player, as a real one needs a running server.
+ * {@link PlayerAuth} of the stub just returns the state, as the real implementation is in
+ * {@code MixinServerPlayerEntity}, which can only be applied in a game launched by Fabric.
+ * Auth prompts are not sent by the stub (the real ones are throttled).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlayerStateBenchmark {
+    private static final String NAME = "Player123";
+
+    @Param({"true", "false"})
+    public boolean authenticated;
+
+    private StubPlayer player;
+
+    /**
+     * Player that skips the constructor, so it doesn't need a server or world.
+     */
+    private static class StubPlayer extends ServerPlayerEntity implements PlayerAuth {
+        private boolean authenticated;
+
+        @SuppressWarnings("ConstantConditions")
+        private StubPlayer() {
+            // Never called, instances are allocated without running constructors
+            super(null, null, null);
+        }
+
+        @Override
+        public void hidePosition(boolean hide) {
+        }
+
+        @Override
+        public String getFakeUuid() {
+            return NAME.toLowerCase();
+        }
+
+        @Override
+        public void setAuthenticated(boolean authenticated) {
+            this.authenticated = authenticated;
+        }
+
+        @Override
+        public boolean isAuthenticated() {
+            return this.authenticated;
+        }
+
+        @Override
+        public boolean isInLimbo() {
+            return false;
+        }
+
+        @Override
+        public void holdInLimbo() {
+        }
+
+        @Override
+        public Text getAuthMessage() {
+            return new LiteralText("");
+        }
+
+        @Override
+        public void sendAuthMessage() {
+        }
+
+        @Override
+        public boolean canSkipAuth() {
+            return false;
+        }
+
+        @Override
+        public boolean isUsingMojangAccount() {
+            return false;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+        EasyAuth.config = new AuthConfig();
+        EasyAuth.policy = AuthPolicy.compile(EasyAuth.config);
+
+        Field field = Unsafe.class.getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        this.player = (StubPlayer) ((Unsafe) field.get(null)).allocateInstance(StubPlayer.class);
+        this.player.setAuthenticated(this.authenticated);
+    }
+
+    @Benchmark
+    public ActionResult onPlayerMove() {
+        return AuthEventHandler.onPlayerMove(this.player);
+    }
+
+    @Benchmark
+    public ActionResult onPlayerChat() {
+        return AuthEventHandler.onPlayerChat(this.player, "hello");
+    }
+
+    @Benchmark
+    public ActionResult onUseBlock() {
+        return AuthEventHandler.onUseBlock(this.player);
+    }
+
+    @Benchmark
+    public boolean onBreakBlock() {
+        return AuthEventHandler.onBreakBlock(this.player);
+    }
+
+    @Benchmark
+    public TypedActionResult<ItemStack> onUseItem() {
+        return AuthEventHandler.onUseItem(this.player);
+    }
+
+    @Benchmark
+    public ActionResult onDropItem() {
+        return AuthEventHandler.onDropItem(this.player);
+    }
+
+    @Benchmark
+    public ActionResult onTakeItem() {
+        return AuthEventHandler.onTakeItem(this.player);
+    }
+
+    @Benchmark
+    public ActionResult onAttackEntity() {
+        return AuthEventHandler.onAttackEntity(this.player);
+    }
+
+    @Benchmark
+    public boolean usernameCheck() {
+        return EasyAuth.policy.usernamePattern.matcher(NAME).matches();
+    }
+}
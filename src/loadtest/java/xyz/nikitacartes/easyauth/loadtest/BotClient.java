@@ -0,0 +1,323 @@
+package xyz.nikitacartes.easyauth.loadtest;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Minimal Minecraft 1.17.1 (protocol 756) client, just enough to log in and run EasyAuth commands.
+ * <p>
+ * Goes through handshake and login, and if the server accepts the player as offline one,
+ * waits for EasyAuth's prompt, answers with {@code /register} or {@code /login} and waits until authenticated.
+ * Premium players can't be logged in without a Mojang session, so they stop at encryption request.
+ */
+public class BotClient {
+    private static final int PROTOCOL_VERSION = 756;
+
+    // Login state
+    private static final int LOGIN_DISCONNECT = 0x00;
+    private static final int LOGIN_ENCRYPTION_REQUEST = 0x01;
+    private static final int LOGIN_SUCCESS = 0x02;
+    private static final int LOGIN_SET_COMPRESSION = 0x03;
+    private static final int LOGIN_PLUGIN_REQUEST = 0x04;
+    private static final int LOGIN_PLUGIN_RESPONSE = 0x02;
+
+    // Play state
+    private static final int PLAY_CHAT = 0x0F;
+    private static final int PLAY_DISCONNECT = 0x1A;
+    private static final int PLAY_KEEP_ALIVE = 0x21;
+    private static final int PLAY_JOIN_GAME = 0x26;
+    private static final int PLAY_CHAT_SERVERBOUND = 0x03;
+    private static final int PLAY_KEEP_ALIVE_SERVERBOUND = 0x0F;
+
+    public enum Outcome {
+        /**
+         * Player registered or logged in.
+         */
+        AUTHENTICATED,
+        /**
+         * Server asked for encryption, as the name belongs to a (stub) Mojang account.
+         */
+        PREMIUM,
+        /**
+         * Player was disconnected by server.
+         */
+        KICKED,
+        /**
+         * Server didn't respond in time.
+         */
+        TIMEOUT,
+        /**
+         * Connection failed or protocol error.
+         */
+        ERROR
+    }
+
+    /**
+     * Result of a single bot run, times are in nanoseconds (0 if step wasn't reached).
+     */
+    public static class Result {
+        public Outcome outcome;
+        public String message;
+        /**
+         * From connecting to login success or encryption request.
+         */
+        public long loginNanos;
+        /**
+         * From sending the auth command to being authenticated.
+         */
+        public long authNanos;
+        /**
+         * From connecting to being authenticated.
+         */
+        public long totalNanos;
+        public boolean registered;
+    }
+
+    private final String host;
+    private final int port;
+    private final String name;
+    private final String password;
+    private final int timeoutMillis;
+    private final long stayMillis;
+
+    private Socket socket;
+    private DataInputStream in;
+    private OutputStream out;
+    private int compressionThreshold = -1;
+    private final Inflater inflater = new Inflater();
+
+    public BotClient(String host, int port, String name, String password, int timeoutMillis, long stayMillis) {
+        this.host = host;
+        this.port = port;
+        this.name = name;
+        this.password = password;
+        this.timeoutMillis = timeoutMillis;
+        this.stayMillis = stayMillis;
+    }
+
+    /**
+     * Connects and goes through login, then disconnects.
+     *
+     * @return result of the run
+     */
+    public Result run() {
+        Result result = new Result();
+        long start = System.nanoTime();
+        try {
+            this.socket = new Socket();
+            this.socket.setTcpNoDelay(true);
+            this.socket.connect(new InetSocketAddress(this.host, this.port), this.timeoutMillis);
+            this.socket.setSoTimeout(this.timeoutMillis);
+            this.in = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+            this.out = new BufferedOutputStream(this.socket.getOutputStream());
+
+            this.login(result, start);
+            if(result.outcome == null)
+                this.play(result, start);
+        } catch (SocketTimeoutException e) {
+            result.outcome = Outcome.TIMEOUT;
+        } catch (IOException | DataFormatException | RuntimeException e) {
+            result.outcome = Outcome.ERROR;
+            result.message = e.toString();
+        } finally {
+            this.close();
+        }
+        return result;
+    }
+
+    private void login(Result result, long start) throws IOException, DataFormatException {
+        ByteArrayOutputStream handshake = new ByteArrayOutputStream();
+        writeVarInt(handshake, PROTOCOL_VERSION);
+        writeString(handshake, this.host);
+        handshake.write(this.port >>> 8);
+        handshake.write(this.port);
+        writeVarInt(handshake, 2);
+        this.send(0x00, handshake.toByteArray());
+
+        ByteArrayOutputStream loginStart = new ByteArrayOutputStream();
+        writeString(loginStart, this.name);
+        this.send(0x00, loginStart.toByteArray());
+
+        while (true) {
+            DataInputStream packet = this.receive();
+            int id = readVarInt(packet);
+            switch (id) {
+                case LOGIN_DISCONNECT -> {
+                    result.outcome = Outcome.KICKED;
+                    result.message = readString(packet);
+                    return;
+                }
+                case LOGIN_ENCRYPTION_REQUEST -> {
+                    result.loginNanos = System.nanoTime() - start;
+                    result.outcome = Outcome.PREMIUM;
+                    return;
+                }
+                case LOGIN_SUCCESS -> {
+                    result.loginNanos = System.nanoTime() - start;
+                    return;
+                }
+                case LOGIN_SET_COMPRESSION -> this.compressionThreshold = readVarInt(packet);
+                case LOGIN_PLUGIN_REQUEST -> {
+                    // Not a modded client, answering that channel isn't understood
+                    ByteArrayOutputStream response = new ByteArrayOutputStream();
+                    writeVarInt(response, readVarInt(packet));
+                    response.write(0);
+                    this.send(LOGIN_PLUGIN_RESPONSE, response.toByteArray());
+                }
+                default -> throw new IOException("Unexpected login packet " + id);
+            }
+        }
+    }
+
+    private void play(Result result, long start) throws IOException, DataFormatException {
+        long commandSent = 0;
+        long leaveAt = 0;
+        while (true) {
+            if(leaveAt != 0 && System.nanoTime() >= leaveAt)
+                return;
+            DataInputStream packet = this.receive();
+            int id = readVarInt(packet);
+            if(id == PLAY_KEEP_ALIVE) {
+                ByteArrayOutputStream keepAlive = new ByteArrayOutputStream();
+                new DataOutputStream(keepAlive).writeLong(packet.readLong());
+                this.send(PLAY_KEEP_ALIVE_SERVERBOUND, keepAlive.toByteArray());
+            }
+            else if(id == PLAY_DISCONNECT) {
+                result.outcome = Outcome.KICKED;
+                result.message = readString(packet);
+                return;
+            }
+            else if(id == PLAY_JOIN_GAME && result.outcome == null) {
+                // Commands are accepted from now on, prompt might have been sent already
+                if(commandSent == 0) {
+                    this.chat("/login " + this.password);
+                    commandSent = System.nanoTime();
+                }
+            }
+            else if(id == PLAY_CHAT && result.outcome == null) {
+                String message = readString(packet);
+                if(message.contains("now authenticated") || message.contains("successfullyAuthenticated") || message.contains("registerSuccess")) {
+                    long now = System.nanoTime();
+                    result.authNanos = commandSent == 0 ? 0 : now - commandSent;
+                    result.totalNanos = now - start;
+                    result.outcome = Outcome.AUTHENTICATED;
+                    leaveAt = now + this.stayMillis * 1_000_000L;
+                    if(this.stayMillis <= 0)
+                        return;
+                }
+                else if(!result.registered && (message.contains("registerRequired") || message.contains("/register "))) {
+                    // Account doesn't exist yet
+                    result.registered = true;
+                    this.chat("/register " + this.password + " " + this.password);
+                    commandSent = System.nanoTime();
+                }
+            }
+        }
+    }
+
+    private void chat(String message) throws IOException {
+        ByteArrayOutputStream chat = new ByteArrayOutputStream();
+        writeString(chat, message);
+        this.send(PLAY_CHAT_SERVERBOUND, chat.toByteArray());
+    }
+
+    private void send(int id, byte[] data) throws IOException {
+        ByteArrayOutputStream packet = new ByteArrayOutputStream(data.length + 5);
+        writeVarInt(packet, id);
+        packet.write(data);
+        byte[] body = packet.toByteArray();
+
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(body.length + 10);
+        if(this.compressionThreshold < 0) {
+            writeVarInt(frame, body.length);
+            frame.write(body);
+        }
+        else if(body.length < this.compressionThreshold) {
+            writeVarInt(frame, body.length + 1);
+            frame.write(0);
+            frame.write(body);
+        }
+        else {
+            Deflater deflater = new Deflater();
+            deflater.setInput(body);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            writeVarInt(compressed, body.length);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished())
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            deflater.end();
+            writeVarInt(frame, compressed.size());
+            compressed.writeTo(frame);
+        }
+        frame.writeTo(this.out);
+        this.out.flush();
+    }
+
+    private DataInputStream receive() throws IOException, DataFormatException {
+        int length = readVarInt(this.in);
+        byte[] frame = new byte[length];
+        this.in.readFully(frame);
+        if(this.compressionThreshold < 0)
+            return new DataInputStream(new ByteArrayInputStream(frame));
+
+        ByteArrayInputStream frameIn = new ByteArrayInputStream(frame);
+        int dataLength = readVarInt(frameIn);
+        if(dataLength == 0)
+            return new DataInputStream(frameIn);
+        byte[] data = new byte[dataLength];
+        this.inflater.reset();
+        this.inflater.setInput(frame, length - frameIn.available(), frameIn.available());
+        this.inflater.inflate(data);
+        return new DataInputStream(new ByteArrayInputStream(data));
+    }
+
+    private void close() {
+        this.inflater.end();
+        if(this.socket != null) {
+            try {
+                this.socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(InputStream in) throws IOException {
+        int value = 0;
+        for (int i = 0; i < 5; i++) {
+            int b = in.read();
+            if(b < 0)
+                throw new EOFException();
+            value |= (b & 0x7F) << (7 * i);
+            if((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("VarInt too big");
+    }
+
+    private static void writeString(OutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
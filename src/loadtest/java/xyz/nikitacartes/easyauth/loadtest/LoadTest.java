@@ -0,0 +1,339 @@
+package xyz.nikitacartes.easyauth.loadtest;
+
+import com.google.gson.GsonBuilder;
+import xyz.nikitacartes.easyauth.utils.AuthMetrics;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Login storm against a dedicated server running EasyAuth.
+ * <p>
+ * Usage:
+ * <pre>
+ * ./gradlew runLoadTestServer    # prepares run/loadtest (see {@link #prepare}) and starts the server
+ * ./gradlew loadTest -PloadTestArgs="--clients 5000 --rate 200 --premium 0.2"
+ * </pre>
+ * Bots arrive at the given average rate (Poisson arrivals), {@code --premium} fraction of them
+ * use names that the local {@link MojangStub} reports as premium. Others log in with {@code /login},
+ * or {@code /register} if the account doesn't exist yet, so repeated runs measure logins.
+ * <p>
+ * Client side latency percentiles are measured by bots, while MSPT, heap, RSS and thread count of the server
+ * are scraped from EasyAuth's metrics endpoint before (baseline) and during the storm.
+ * Storage is the default LevelDB, as MongoDB backend doesn't write accounts yet.
+ */
+public class LoadTest {
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("host", "127.0.0.1");
+        DEFAULTS.put("port", "25565");
+        DEFAULTS.put("clients", "1000");
+        DEFAULTS.put("rate", "50");
+        DEFAULTS.put("premium", "0.2");
+        DEFAULTS.put("accounts", "0");
+        DEFAULTS.put("password", "loadtest123");
+        DEFAULTS.put("timeout", "30000");
+        DEFAULTS.put("stay", "0");
+        DEFAULTS.put("mojang-port", "9401");
+        DEFAULTS.put("mojang-latency", "50");
+        DEFAULTS.put("mojang-failure", "0");
+        DEFAULTS.put("metrics-port", "9400");
+        DEFAULTS.put("baseline", "10");
+    }
+
+    public static void main(String[] args) throws Exception {
+        if(args.length == 0) {
+            System.out.println("Usage: LoadTest prepare <server dir> [options] | LoadTest run [options]");
+            System.out.println("Options (with defaults): " + DEFAULTS);
+            return;
+        }
+        if(args[0].equals("prepare")) {
+            prepare(Path.of(args[1]), parseOptions(Arrays.copyOfRange(args, 2, args.length)));
+            return;
+        }
+        run(parseOptions(Arrays.copyOfRange(args, 1, args.length)));
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if(!args[i].startsWith("--") || !DEFAULTS.containsKey(args[i].substring(2)))
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    /**
+     * Prepares server directory for load testing: accepts EULA, and sets server and EasyAuth
+     * to use premium autologin with local Mojang stub and metrics endpoint.
+     *
+     * @param dir server directory
+     * @param options options
+     * @throws IOException if files can't be written
+     */
+    public static void prepare(Path dir, Map<String, String> options) throws IOException {
+        Files.createDirectories(dir.resolve("mods/EasyAuth"));
+        Files.writeString(dir.resolve("eula.txt"), "eula=true\n");
+        Files.writeString(dir.resolve("server.properties"), String.join("\n",
+                "online-mode=true",
+                "server-port=" + options.get("port"),
+                "max-players=100000",
+                "level-type=flat",
+                "generate-structures=false",
+                "spawn-protection=0",
+                "view-distance=2",
+                "") );
+
+        // Only overridden values, others get their defaults when EasyAuth loads the config
+        Map<String, Object> main = new LinkedHashMap<>();
+        main.put("premiumAutologin", true);
+        main.put("sessionTimeoutTime", -1);
+        main.put("maxLoginTries", -1);
+        Map<String, Object> experimental = new LinkedHashMap<>();
+        experimental.put("mojangApiUrl", "http://127.0.0.1:" + options.get("mojang-port"));
+        experimental.put("metricsPort", Integer.parseInt(options.get("metrics-port")));
+        experimental.put("metricsInterval", 1);
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("main", main);
+        config.put("experimental", experimental);
+        Files.writeString(dir.resolve("mods/EasyAuth/config.json"), new GsonBuilder().setPrettyPrinting().create().toJson(config));
+        System.out.println("Prepared load test server in " + dir.toAbsolutePath());
+    }
+
+    public static void run(Map<String, String> options) throws Exception {
+        String host = options.get("host");
+        int port = Integer.parseInt(options.get("port"));
+        int clients = Integer.parseInt(options.get("clients"));
+        double rate = Double.parseDouble(options.get("rate"));
+        double premium = Double.parseDouble(options.get("premium"));
+        int accounts = Integer.parseInt(options.get("accounts"));
+        if(accounts <= 0)
+            accounts = clients;
+        String password = options.get("password");
+        int timeout = Integer.parseInt(options.get("timeout"));
+        long stay = Long.parseLong(options.get("stay"));
+
+        ExecutorService executor = createExecutor();
+        MojangStub mojang = new MojangStub(Integer.parseInt(options.get("mojang-port")),
+                Long.parseLong(options.get("mojang-latency")), Double.parseDouble(options.get("mojang-failure")), executor);
+        ServerSampler sampler = new ServerSampler("http://127.0.0.1:" + options.get("metrics-port") + "/metrics");
+
+        System.out.println("Measuring baseline for " + options.get("baseline") + " s");
+        ServerSampler.Stats baseline = sampler.sample(Long.parseLong(options.get("baseline")) * 1000, null);
+
+        AuthMetrics.Histogram login = new AuthMetrics.Histogram();
+        AuthMetrics.Histogram premiumLogin = new AuthMetrics.Histogram();
+        AuthMetrics.Histogram auth = new AuthMetrics.Histogram();
+        AuthMetrics.Histogram total = new AuthMetrics.Histogram();
+        Map<BotClient.Outcome, AtomicInteger> outcomes = new EnumMap<>(BotClient.Outcome.class);
+        for (BotClient.Outcome outcome : BotClient.Outcome.values())
+            outcomes.put(outcome, new AtomicInteger());
+        AtomicInteger registered = new AtomicInteger();
+        Map<String, AtomicInteger> messages = new ConcurrentHashMap<>();
+
+        System.out.println("Starting " + clients + " clients at " + rate + "/s");
+        CountDownLatch done = new CountDownLatch(clients);
+        CompletableFuture<ServerSampler.Stats> underLoad = CompletableFuture.supplyAsync(() -> sampler.sample(Long.MAX_VALUE, done), executor);
+        long start = System.nanoTime();
+        long next = start;
+        Random random = new Random();
+        for (int i = 0; i < clients; i++) {
+            // Exponential gaps between arrivals
+            next += (long) (-Math.log(1 - random.nextDouble()) / rate * 1_000_000_000L);
+            long wait = next - System.nanoTime();
+            if(wait > 0)
+                LockSupport.parkNanos(wait);
+
+            boolean isPremium = random.nextDouble() < premium;
+            String name = (isPremium ? MojangStub.PREMIUM_PREFIX : "bot") + (i % accounts);
+            executor.execute(() -> {
+                try {
+                    BotClient.Result result = new BotClient(host, port, name, password, timeout, stay).run();
+                    outcomes.get(result.outcome).incrementAndGet();
+                    if(result.message != null)
+                        messages.computeIfAbsent(shorten(result.message), m -> new AtomicInteger()).incrementAndGet();
+                    if(result.outcome == BotClient.Outcome.PREMIUM) {
+                        premiumLogin.record(result.loginNanos / 1000);
+                    }
+                    else if(result.outcome == BotClient.Outcome.AUTHENTICATED) {
+                        login.record(result.loginNanos / 1000);
+                        auth.record(result.authNanos / 1000);
+                        total.record(result.totalNanos / 1000);
+                        if(result.registered)
+                            registered.incrementAndGet();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        ServerSampler.Stats load = underLoad.get();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf(Locale.ROOT, "%nFinished in %.1f s (%.1f clients/s)%n", seconds, clients / seconds);
+        outcomes.forEach((outcome, count) -> System.out.println("  " + outcome + ": " + count));
+        System.out.println("  of which registered: " + registered);
+        messages.forEach((message, count) -> System.out.println("  " + count + "x " + message));
+        System.out.println("Mojang stub requests: " + mojang.getRequests());
+        System.out.println("\nClient latency (ms)      p50      p90      p99      max");
+        printLatency("join (cracked)", login);
+        printLatency("join (premium)", premiumLogin);
+        printLatency("auth command", auth);
+        printLatency("join to auth", total);
+        System.out.println("\nServer                 baseline  under load (max)");
+        printServer("MSPT", baseline.avgMspt, load.avgMspt, load.maxMspt);
+        printServer("TPS", baseline.tps(), load.tps(), Math.min(20, 1000 / Math.max(load.maxMspt, 1e-9)));
+        printServer("heap MB", baseline.maxHeap / 1048576.0, load.avgHeap / 1048576.0, load.maxHeap / 1048576.0);
+        printServer("RSS MB", baseline.maxRss / 1048576.0, load.avgRss / 1048576.0, load.maxRss / 1048576.0);
+        printServer("threads", baseline.maxThreads, load.avgThreads, load.maxThreads);
+        printServer("hashing queue", baseline.maxQueue, load.avgQueue, load.maxQueue);
+        printServer("unauthenticated", baseline.maxUnauthenticated, load.avgUnauthenticated, load.maxUnauthenticated);
+        if(load.samples == 0)
+            System.out.println("(No server samples, is experimental.metricsPort set?)");
+
+        mojang.stop();
+        executor.shutdownNow();
+    }
+
+    private static String shorten(String message) {
+        return message.length() > 120 ? message.substring(0, 120) + "..." : message;
+    }
+
+    private static void printLatency(String name, AuthMetrics.Histogram histogram) {
+        System.out.printf(Locale.ROOT, "  %-18s %8.1f %8.1f %8.1f %8.1f  (%d)%n", name,
+                histogram.getQuantile(0.5) / 1000.0, histogram.getQuantile(0.9) / 1000.0,
+                histogram.getQuantile(0.99) / 1000.0, histogram.getMax() / 1000.0, histogram.getCount());
+    }
+
+    private static void printServer(String name, double baseline, double average, double max) {
+        System.out.printf(Locale.ROOT, "  %-18s %8.1f %8.1f (%.1f)%n", name, baseline, average, max);
+    }
+
+    /**
+     * Uses virtual threads if available (Java 21+), as each bot blocks on its socket.
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException ignored) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Scrapes server metrics from EasyAuth's Prometheus endpoint once per second.
+     */
+    private static class ServerSampler {
+        private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        private final String url;
+
+        private static class Stats {
+            private int samples;
+            private double avgMspt, maxMspt;
+            private double avgHeap, maxHeap;
+            private double avgRss, maxRss;
+            private double avgThreads, maxThreads;
+            private double avgQueue, maxQueue;
+            private double avgUnauthenticated, maxUnauthenticated;
+
+            private double tps() {
+                return Math.min(20, 1000 / Math.max(this.avgMspt, 1e-9));
+            }
+        }
+
+        private ServerSampler(String url) {
+            this.url = url;
+        }
+
+        /**
+         * Samples metrics until time passes or latch is released.
+         */
+        private Stats sample(long millis, CountDownLatch until) {
+            Stats stats = new Stats();
+            long end = millis == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + millis;
+            double sumMspt = 0, sumHeap = 0, sumRss = 0, sumThreads = 0, sumQueue = 0, sumUnauthenticated = 0;
+            while (System.currentTimeMillis() < end) {
+                Map<String, Double> metrics = this.scrape();
+                if(metrics != null) {
+                    stats.samples++;
+                    double mspt = metrics.getOrDefault("easyauth_server_mspt", 0.0);
+                    double heap = metrics.getOrDefault("jvm_memory_heap_used_bytes", 0.0);
+                    double rss = metrics.getOrDefault("process_resident_memory_bytes", 0.0);
+                    double threads = metrics.getOrDefault("jvm_threads", 0.0);
+                    double queue = metrics.getOrDefault("easyauth_hashing_queue_size", 0.0);
+                    double unauthenticated = metrics.getOrDefault("easyauth_unauthenticated_players", 0.0);
+                    sumMspt += mspt;
+                    sumHeap += heap;
+                    sumRss += rss;
+                    sumThreads += threads;
+                    sumQueue += queue;
+                    sumUnauthenticated += unauthenticated;
+                    stats.maxMspt = Math.max(stats.maxMspt, mspt);
+                    stats.maxHeap = Math.max(stats.maxHeap, heap);
+                    stats.maxRss = Math.max(stats.maxRss, rss);
+                    stats.maxThreads = Math.max(stats.maxThreads, threads);
+                    stats.maxQueue = Math.max(stats.maxQueue, queue);
+                    stats.maxUnauthenticated = Math.max(stats.maxUnauthenticated, unauthenticated);
+                }
+                try {
+                    if(until != null ? until.await(1, TimeUnit.SECONDS) : sleep(Math.min(1000, end - System.currentTimeMillis())))
+                        break;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if(stats.samples > 0) {
+                stats.avgMspt = sumMspt / stats.samples;
+                stats.avgHeap = sumHeap / stats.samples;
+                stats.avgRss = sumRss / stats.samples;
+                stats.avgThreads = sumThreads / stats.samples;
+                stats.avgQueue = sumQueue / stats.samples;
+                stats.avgUnauthenticated = sumUnauthenticated / stats.samples;
+            }
+            return stats;
+        }
+
+        private static boolean sleep(long millis) throws InterruptedException {
+            if(millis > 0)
+                Thread.sleep(millis);
+            return false;
+        }
+
+        private Map<String, Double> scrape() {
+            try {
+                HttpResponse<String> response = this.client.send(HttpRequest.newBuilder(URI.create(this.url)).timeout(Duration.ofSeconds(1)).build(),
+                        HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                Map<String, Double> metrics = new HashMap<>();
+                for (String line : response.body().split("\n")) {
+                    int space = line.lastIndexOf(' ');
+                    if(line.startsWith("#") || space < 0)
+                        continue;
+                    try {
+                        metrics.put(line.substring(0, space), Double.parseDouble(line.substring(space + 1)));
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+                return metrics;
+            } catch (IOException e) {
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+}
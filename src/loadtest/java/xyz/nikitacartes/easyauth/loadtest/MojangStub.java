@@ -0,0 +1,95 @@
+package xyz.nikitacartes.easyauth.loadtest;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local stand-in for Mojang API bulk profiles endpoint ({@code POST /profiles/minecraft}).
+ * <p>
+ * Names starting with {@link #PREMIUM_PREFIX} have an account, others don't.
+ * Latency and failure rate can be set, to see how logins behave when API is slow or failing.
+ */
+public class MojangStub {
+    public static final String PREMIUM_PREFIX = "prem";
+
+    private static final Gson gson = new Gson();
+
+    private final HttpServer server;
+    private final LongAdder requests = new LongAdder();
+
+    /**
+     * Starts the stub.
+     *
+     * @param port port to listen on (127.0.0.1 only)
+     * @param latencyMillis delay added to every response
+     * @param failureRate fraction of requests answered with HTTP 500
+     * @param executor executor handling requests
+     * @throws IOException if port can't be bound
+     */
+    public MojangStub(int port, long latencyMillis, double failureRate, ExecutorService executor) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/profiles/minecraft", exchange -> {
+            this.requests.increment();
+            String[] names;
+            try (InputStreamReader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+                names = gson.fromJson(reader, String[].class);
+            }
+            if(latencyMillis > 0) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if(!"POST".equals(exchange.getRequestMethod()) || names == null || ThreadLocalRandom.current().nextDouble() < failureRate) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+
+            List<Map<String, String>> profiles = new ArrayList<>();
+            for (String name : names) {
+                if(name != null && name.toLowerCase(Locale.ROOT).startsWith(PREMIUM_PREFIX)) {
+                    String id = UUID.nameUUIDFromBytes(("Premium:" + name).getBytes(StandardCharsets.UTF_8)).toString().replace("-", "");
+                    profiles.add(Map.of("id", id, "name", name));
+                }
+            }
+            byte[] body = gson.toJson(profiles).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        this.server.start();
+    }
+
+    /**
+     * Gets the number of requests received.
+     *
+     * @return number of requests
+     */
+    public long getRequests() {
+        return this.requests.sum();
+    }
+
+    public void stop() {
+        this.server.stop(0);
+    }
+}
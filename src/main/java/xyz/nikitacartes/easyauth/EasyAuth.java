@@ -3,25 +3,39 @@ package xyz.nikitacartes.easyauth;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.command.v1.CommandRegistrationCallback;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.event.player.*;
 import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.item.ItemStack;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.ActionResult;
+import net.minecraft.util.TypedActionResult;
 import xyz.nikitacartes.easyauth.commands.*;
 import xyz.nikitacartes.easyauth.event.AuthEventHandler;
 import xyz.nikitacartes.easyauth.storage.AuthConfig;
+import xyz.nikitacartes.easyauth.storage.AuthPolicy;
 import xyz.nikitacartes.easyauth.storage.DBHelper;
 import xyz.nikitacartes.easyauth.storage.PlayerCache;
+import xyz.nikitacartes.easyauth.storage.PremiumCache;
+import xyz.nikitacartes.easyauth.utils.AuditLog;
+import xyz.nikitacartes.easyauth.utils.AuthMetrics;
+import xyz.nikitacartes.easyauth.utils.EasyLogger;
+import xyz.nikitacartes.easyauth.utils.HashingScheduler;
+import xyz.nikitacartes.easyauth.utils.HookProfiler;
+import xyz.nikitacartes.easyauth.utils.TimingWheel;
 
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Properties;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static xyz.nikitacartes.easyauth.utils.EasyLogger.logInfo;
 import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
@@ -32,7 +46,23 @@ public class EasyAuth implements ModInitializer {
 
     public static DBHelper DB = new DBHelper();
 
-    public static final ExecutorService THREADPOOL = Executors.newCachedThreadPool();
+    /**
+     * Runs blocking work (database, files, web requests).
+     * Uses virtual threads if JVM supports them, see {@link AuthConfig.ExperimentalConfig#useVirtualThreads}.
+     */
+    public static ExecutorService THREADPOOL;
+
+    /**
+     * Runs password hashing, logins first.
+     * Leaves a core for the server thread.
+     */
+    public static final HashingScheduler HASHING = new HashingScheduler(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    /**
+     * Tick based timers (kicking and reminding players that are not authenticated).
+     * Ticked at the end of each server tick.
+     */
+    public static final TimingWheel TIMERS = new TimingWheel(512);
 
     /**
      * HashMap of players that have joined the server.
@@ -42,10 +72,10 @@ public class EasyAuth implements ModInitializer {
     public static final HashMap<String, PlayerCache> playerCacheMap = new HashMap<>();
 
     /**
-     * HashSet of player names that have Mojang accounts.
-     * If player is saved in here, they will be treated as online-mode ones.
+     * Cache of player names that do and don't have Mojang accounts.
+     * If player is marked as premium in here, they will be treated as online-mode ones.
      */
-    public static final HashSet<String> mojangAccountNamesCache = new HashSet<>();
+    public static final PremiumCache mojangAccountNamesCache = new PremiumCache();
 
     // Getting game directory
     public static Path gameDirectory;
@@ -58,6 +88,12 @@ public class EasyAuth implements ModInitializer {
      */
     public static AuthConfig config;
 
+    /**
+     * Compiled snapshot of the {@link #config}, used by hooks.
+     * Replaced as a whole whenever config changes.
+     */
+    public static volatile AuthPolicy policy;
+
 
     public static void init(Path gameDir) {
         gameDirectory = gameDir;
@@ -77,8 +113,13 @@ public class EasyAuth implements ModInitializer {
             throw new RuntimeException("[EasyAuth] Error creating directory!");
         // Loading config
         config = AuthConfig.load(new File(gameDirectory + "/mods/EasyAuth/config.json"));
+        policy = AuthPolicy.compile(config);
+        THREADPOOL = createBlockingExecutor();
+        mojangAccountNamesCache.load(new File(gameDirectory + "/mods/EasyAuth/premiumCache.json"));
         // Connecting to db
         DB.openConnection();
+        AuthMetrics.start();
+        AuditLog.start();
     }
 
     /**
@@ -86,10 +127,13 @@ public class EasyAuth implements ModInitializer {
      */
     public static void stop() {
         logInfo("Shutting down EasyAuth.");
+        AuthMetrics.stop();
         DB.saveAll(playerCacheMap);
+        mojangAccountNamesCache.save(new File(gameDirectory + "/mods/EasyAuth/premiumCache.json"));
 
         // Closing threads
         try {
+            HASHING.shutdown(500);
             THREADPOOL.shutdownNow();
             if (!THREADPOOL.awaitTermination(500, TimeUnit.MILLISECONDS)) {
                 Thread.currentThread().interrupt();
@@ -101,6 +145,35 @@ public class EasyAuth implements ModInitializer {
 
         // Closing DB connection
         DB.close();
+        AuditLog.stop();
+        EasyLogger.flush();
+    }
+
+    /**
+     * Creates executor for blocking work.
+     * Virtual threads (Java 21+) are looked up reflectively, as mod is compiled for Java 16.
+     *
+     * @return virtual thread per task executor if available, otherwise bounded thread pool
+     */
+    private static ExecutorService createBlockingExecutor() {
+        if(config.experimental.useVirtualThreads) {
+            try {
+                ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                logInfo("Using virtual threads for blocking operations.");
+                return executor;
+            } catch (ReflectiveOperationException | UnsupportedOperationException ignored) {
+                // Not available (or still a preview feature) in this JVM
+            }
+        }
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        AtomicInteger threadId = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "EasyAuth IO #" + threadId.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     @Override
@@ -117,13 +190,43 @@ public class EasyAuth implements ModInitializer {
         });
 
         // From Fabric API
-        PlayerBlockBreakEvents.BEFORE.register((world, player, blockPos, blockState, blockEntity) -> AuthEventHandler.onBreakBlock(player));
-        UseBlockCallback.EVENT.register((player, world, hand, blockHitResult) -> AuthEventHandler.onUseBlock(player));
-        UseItemCallback.EVENT.register((player, world, hand) -> AuthEventHandler.onUseItem(player));
-        AttackEntityCallback.EVENT.register((player, world, hand, entity, entityHitResult) -> AuthEventHandler.onAttackEntity(player));
-        UseEntityCallback.EVENT.register((player, world, hand, entity, entityHitResult) -> AuthEventHandler.onUseEntity(player));
+        PlayerBlockBreakEvents.BEFORE.register((world, player, blockPos, blockState, blockEntity) -> {
+            long start = HookProfiler.start();
+            boolean result = AuthEventHandler.onBreakBlock(player);
+            HookProfiler.end(HookProfiler.Hook.BREAK_BLOCK, start);
+            return result;
+        });
+        UseBlockCallback.EVENT.register((player, world, hand, blockHitResult) -> {
+            long start = HookProfiler.start();
+            ActionResult result = AuthEventHandler.onUseBlock(player);
+            HookProfiler.end(HookProfiler.Hook.USE_BLOCK, start);
+            return result;
+        });
+        UseItemCallback.EVENT.register((player, world, hand) -> {
+            long start = HookProfiler.start();
+            TypedActionResult<ItemStack> result = AuthEventHandler.onUseItem(player);
+            HookProfiler.end(HookProfiler.Hook.USE_ITEM, start);
+            return result;
+        });
+        AttackEntityCallback.EVENT.register((player, world, hand, entity, entityHitResult) -> {
+            long start = HookProfiler.start();
+            ActionResult result = AuthEventHandler.onAttackEntity(player);
+            HookProfiler.end(HookProfiler.Hook.ATTACK_ENTITY, start);
+            return result;
+        });
+        UseEntityCallback.EVENT.register((player, world, hand, entity, entityHitResult) -> {
+            long start = HookProfiler.start();
+            ActionResult result = AuthEventHandler.onUseEntity(player);
+            HookProfiler.end(HookProfiler.Hook.USE_ENTITY, start);
+            return result;
+        });
         ServerLifecycleEvents.START_DATA_PACK_RELOAD.register((server, serverResourceManager) -> AuthCommand.reloadConfig(null));
         ServerLifecycleEvents.SERVER_STOPPED.register(this::onStopServer);
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            TIMERS.tick();
+            AuthMetrics.tick(server);
+            mojangAccountNamesCache.tick();
+        });
     }
 
     private void onStopServer(MinecraftServer server) {
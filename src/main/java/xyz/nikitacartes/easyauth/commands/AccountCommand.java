@@ -5,8 +5,11 @@ import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.TranslatableText;
+import xyz.nikitacartes.easyauth.utils.AuditLog;
 import xyz.nikitacartes.easyauth.utils.AuthHelper;
+import xyz.nikitacartes.easyauth.utils.HashingScheduler;
 import xyz.nikitacartes.easyauth.utils.PlayerAuth;
+import xyz.nikitacartes.easyauth.utils.ProxyAuth;
 
 import static com.mojang.brigadier.arguments.StringArgumentType.getString;
 import static com.mojang.brigadier.arguments.StringArgumentType.word;
@@ -70,13 +73,16 @@ public class AccountCommand {
         }
 
         // Different thread to avoid lag spikes
-        THREADPOOL.submit(() -> {
+        HASHING.submit(HashingScheduler.Priority.LOGIN, player.getIp(), () -> {
             if (AuthHelper.checkPassword(((PlayerAuth) player).getFakeUuid(), pass.toCharArray()) == AuthHelper.PasswordOptions.CORRECT) {
                 DB.deleteUserData(((PlayerAuth) player).getFakeUuid());
                 player.sendMessage(new TranslatableText("text.easyauth.accountDeleted"), false);
                 ((PlayerAuth) player).setAuthenticated(false);
+                ProxyAuth.notifyLogout(player);
+                AuditLog.record(AuditLog.Type.UNREGISTER, player.getGameProfile().getName(), player.getIp(), null);
                 return;
             }
+            AuditLog.record(AuditLog.Type.LOGIN_FAILED, player.getGameProfile().getName(), player.getIp(), "wrong password (unregister)");
             player.sendMessage(
                     new TranslatableText("text.easyauth.wrongPassword"),
                     false
@@ -98,7 +104,7 @@ public class AccountCommand {
             return 0;
         }
         // Different thread to avoid lag spikes
-        THREADPOOL.submit(() -> {
+        HASHING.submit(HashingScheduler.Priority.LOGIN, player.getIp(), () -> {
             if (AuthHelper.checkPassword(((PlayerAuth) player).getFakeUuid(), oldPass.toCharArray()) == AuthHelper.PasswordOptions.CORRECT) {
                 if (newPass.length() < config.main.minPasswordChars) {
                     player.sendMessage(new TranslatableText("text.easyauth.minPasswordChars", config.main.minPasswordChars), false);
@@ -114,12 +120,15 @@ public class AccountCommand {
                         new TranslatableText("text.easyauth.passwordUpdated"),
                         false
                 );
+                AuditLog.record(AuditLog.Type.PASSWORD_CHANGE, player.getGameProfile().getName(), player.getIp(), null);
             }
-            else
+            else {
                 player.sendMessage(
                     new TranslatableText("text.easyauth.wrongPassword"),
                     false
                 );
+                AuditLog.record(AuditLog.Type.LOGIN_FAILED, player.getGameProfile().getName(), player.getIp(), "wrong password (changePassword)");
+            }
         });
         return 0;
     }
@@ -6,23 +6,49 @@ import net.minecraft.command.argument.DimensionArgumentType;
 import net.minecraft.command.argument.RotationArgumentType;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.ClickEvent;
 import net.minecraft.text.TranslatableText;
+import net.minecraft.util.Formatting;
 import net.minecraft.util.Identifier;
 import xyz.nikitacartes.easyauth.storage.AuthConfig;
+import xyz.nikitacartes.easyauth.storage.AuthPolicy;
 import xyz.nikitacartes.easyauth.storage.PlayerCache;
+import xyz.nikitacartes.easyauth.utils.AccountSearch;
+import xyz.nikitacartes.easyauth.utils.AccountTransfer;
+import xyz.nikitacartes.easyauth.utils.AuditLog;
 import xyz.nikitacartes.easyauth.utils.AuthHelper;
+import xyz.nikitacartes.easyauth.utils.AuthMetrics;
+import xyz.nikitacartes.easyauth.utils.DataMigration;
+import xyz.nikitacartes.easyauth.utils.HashingScheduler;
+import xyz.nikitacartes.easyauth.utils.HookProfiler;
+import xyz.nikitacartes.easyauth.utils.LangMessage;
 
 import java.io.File;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
+import static com.mojang.brigadier.arguments.IntegerArgumentType.getInteger;
+import static com.mojang.brigadier.arguments.IntegerArgumentType.integer;
 import static com.mojang.brigadier.arguments.StringArgumentType.getString;
+import static com.mojang.brigadier.arguments.StringArgumentType.string;
 import static com.mojang.brigadier.arguments.StringArgumentType.word;
 import static net.minecraft.server.command.CommandManager.argument;
 import static net.minecraft.server.command.CommandManager.literal;
 import static xyz.nikitacartes.easyauth.EasyAuth.*;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
 import static xyz.nikitacartes.easyauth.utils.EasyLogger.logInfo;
 
 public class AuthCommand {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
 
     /**
      * Registers the "/auth" command
@@ -32,7 +58,10 @@ public class AuthCommand {
         dispatcher.register(literal("auth")
             .requires(source -> source.hasPermissionLevel(4))
             .then(literal("reload")
-                .executes( ctx -> reloadConfig(ctx.getSource().getEntity()))
+                .executes( ctx -> {
+                    audit(ctx.getSource(), "reload");
+                    return reloadConfig(ctx.getSource().getEntity());
+                })
             )
             .then(literal("setGlobalPassword")
                     .then(argument("password", word())
@@ -70,6 +99,115 @@ public class AuthCommand {
                         )
                     )
             )
+            .then(literal("stats")
+                .executes( ctx -> stats(ctx.getSource()))
+            )
+            .then(literal("profile")
+                .executes( ctx -> showProfile(ctx.getSource()))
+                .then(literal("start")
+                    .executes( ctx -> setProfiling(ctx.getSource(), true))
+                )
+                .then(literal("stop")
+                    .executes( ctx -> setProfiling(ctx.getSource(), false))
+                )
+            )
+            .then(literal("audit")
+                .then(argument("target", string())
+                    .executes( ctx -> showAudit(ctx.getSource(), getString(ctx, "target"), 168))
+                    .then(argument("hours", integer(1))
+                        .executes( ctx -> showAudit(
+                                ctx.getSource(),
+                                getString(ctx, "target"),
+                                getInteger(ctx, "hours")
+                        ))
+                    )
+                )
+            )
+            .then(literal("list")
+                .executes( ctx -> findAccounts(ctx.getSource(), "/auth list", "", "", playerCache -> true))
+                .then(argument("after", word())
+                    .executes( ctx -> findAccounts(ctx.getSource(), "/auth list", getString(ctx, "after"), "", playerCache -> true))
+                )
+            )
+            .then(literal("find")
+                .then(literal("prefix")
+                    .then(argument("prefix", word())
+                        .executes( ctx -> findAccounts(
+                                ctx.getSource(),
+                                "/auth find prefix " + getString(ctx, "prefix"),
+                                "",
+                                getString(ctx, "prefix"),
+                                playerCache -> true
+                        ))
+                        .then(argument("after", word())
+                            .executes( ctx -> findAccounts(
+                                    ctx.getSource(),
+                                    "/auth find prefix " + getString(ctx, "prefix"),
+                                    getString(ctx, "after"),
+                                    getString(ctx, "prefix"),
+                                    playerCache -> true
+                            ))
+                        )
+                    )
+                )
+                .then(literal("ip")
+                    .then(argument("ip", string())
+                        .executes( ctx -> findAccounts(
+                                ctx.getSource(),
+                                "/auth find ip \"" + getString(ctx, "ip") + "\"",
+                                "",
+                                "",
+                                hasIp(getString(ctx, "ip"))
+                        ))
+                        .then(argument("after", word())
+                            .executes( ctx -> findAccounts(
+                                    ctx.getSource(),
+                                    "/auth find ip \"" + getString(ctx, "ip") + "\"",
+                                    getString(ctx, "after"),
+                                    "",
+                                    hasIp(getString(ctx, "ip"))
+                            ))
+                        )
+                    )
+                )
+                .then(literal("inactive")
+                    .then(argument("days", integer(0))
+                        .executes( ctx -> findAccounts(
+                                ctx.getSource(),
+                                "/auth find inactive " + getInteger(ctx, "days"),
+                                "",
+                                "",
+                                inactiveFor(getInteger(ctx, "days"))
+                        ))
+                        .then(argument("after", word())
+                            .executes( ctx -> findAccounts(
+                                    ctx.getSource(),
+                                    "/auth find inactive " + getInteger(ctx, "days"),
+                                    getString(ctx, "after"),
+                                    "",
+                                    inactiveFor(getInteger(ctx, "days"))
+                            ))
+                        )
+                    )
+                )
+            )
+            .then(literal("export")
+                .executes( ctx -> exportAccounts(ctx.getSource(), "accounts.jsonl.gz"))
+                .then(argument("file", string())
+                    .executes( ctx -> exportAccounts(ctx.getSource(), getString(ctx, "file")))
+                )
+            )
+            .then(literal("import")
+                .then(argument("file", string())
+                    .executes( ctx -> importAccounts(ctx.getSource(), getString(ctx, "file"), false))
+                    .then(literal("replace")
+                        .executes( ctx -> importAccounts(ctx.getSource(), getString(ctx, "file"), true))
+                    )
+                )
+            )
+            .then(literal("migrateData")
+                .executes( ctx -> migrateData(ctx.getSource()))
+            )
             .then(literal("remove")
                 .then(argument("uuid", word())
                     .executes( ctx -> removeAccount(
@@ -111,6 +249,7 @@ public class AuthCommand {
      */
     public static int reloadConfig(Entity sender) {
         config = AuthConfig.load(new File("./mods/EasyAuth/config.json"));
+        policy = AuthPolicy.compile(config);
 
         if(sender != null)
             ((PlayerEntity) sender).sendMessage(new TranslatableText("text.easyauth.configurationReloaded"), false);
@@ -129,8 +268,9 @@ public class AuthCommand {
     private static int setGlobalPassword(ServerCommandSource source, String password) {
         // Getting the player who send the command
         Entity sender = source.getEntity();
+        audit(source, "setGlobalPassword");
         // Different thread to avoid lag spikes
-        THREADPOOL.submit(() -> {
+        HASHING.submit(HashingScheduler.Priority.ADMIN, "admin", () -> {
             // Writing the global pass to config
             config.main.globalPassword = AuthHelper.hashPassword(password.toCharArray());
             config.main.enableGlobalPassword = true;
@@ -166,6 +306,8 @@ public class AuthCommand {
         config.worldSpawn.pitch = pitch;
         config.main.spawnOnJoin = true;
         config.save(new File("./mods/EasyAuth/config.json"));
+        policy = AuthPolicy.compile(config);
+        audit(source, "setSpawn " + world + " " + x + " " + y + " " + z);
 
         // Getting sender
         Entity sender = source.getEntity();
@@ -176,6 +318,243 @@ public class AuthCommand {
         return 1;
     }
 
+    /**
+     * Shows metrics of EasyAuth.
+     *
+     * @param source executioner of the command
+     * @return 1
+     */
+    private static int stats(ServerCommandSource source) {
+        AuthMetrics.update(source.getMinecraftServer());
+        LangMessage.send(source, AuthMetrics.summary());
+        return 1;
+    }
+
+    /**
+     * Starts or stops profiling of EasyAuth's hooks.
+     *
+     * @param source executioner of the command
+     * @param enable whether to start profiling
+     * @return 1
+     */
+    private static int setProfiling(ServerCommandSource source, boolean enable) {
+        Entity sender = source.getEntity();
+        if(enable)
+            HookProfiler.enable(source.getMinecraftServer().getTicks());
+        else
+            HookProfiler.disable();
+
+        if(sender != null)
+            ((PlayerEntity) sender).sendMessage(new TranslatableText(enable ? "text.easyauth.profilerStarted" : "text.easyauth.profilerStopped"), false);
+        else
+            logInfo(enable ? config.lang.profilerStarted : config.lang.profilerStopped);
+        if(!enable)
+            return showProfile(source);
+        return 1;
+    }
+
+    /**
+     * Shows time spent in EasyAuth's hooks.
+     *
+     * @param source executioner of the command
+     * @return 1
+     */
+    private static int showProfile(ServerCommandSource source) {
+        LangMessage.send(source, HookProfiler.report(source.getMinecraftServer().getTicks()));
+        return 1;
+    }
+
+    /**
+     * Shows latest audit events of player or IP, read in the background.
+     *
+     * @param source executioner of the command
+     * @param target player name or IP
+     * @param hours how many hours back to search
+     * @return 1
+     */
+    private static int showAudit(ServerCommandSource source, String target, int hours) {
+        long to = System.currentTimeMillis();
+        long from = to - TimeUnit.HOURS.toMillis(hours);
+        MinecraftServer server = source.getMinecraftServer();
+        THREADPOOL.submit(() -> {
+            List<LangMessage> report = AuditLog.report(target, hours, AuditLog.query(target, from, to, 20));
+            server.execute(() -> LangMessage.send(source, report));
+        });
+        return 1;
+    }
+
+    /**
+     * Migrates data of premium players from offline to online UUIDs in the background.
+     *
+     * @param source executioner of the command
+     * @return 0
+     */
+    private static int migrateData(ServerCommandSource source) {
+        Entity sender = source.getEntity();
+        CompletableFuture<DataMigration.Result> migration = DataMigration.migrate(source.getMinecraftServer());
+        if(migration == null) {
+            if(sender != null)
+                ((PlayerEntity) sender).sendMessage(new TranslatableText("text.easyauth.migrationRunning"), false);
+            else
+                logInfo(config.lang.migrationRunning);
+            return 0;
+        }
+        audit(source, "migrateData");
+
+        if(sender != null)
+            ((PlayerEntity) sender).sendMessage(new TranslatableText("text.easyauth.migrationStarted"), false);
+        else
+            logInfo(config.lang.migrationStarted);
+
+        migration.whenComplete((result, e) -> {
+            if(e != null) {
+                logError("Problem occurred when migrating data: " + e.getMessage());
+                return;
+            }
+            if(sender != null)
+                ((PlayerEntity) sender).sendMessage(new TranslatableText("text.easyauth.migrationFinished", result.migrated, result.failed), false);
+            else
+                logInfo(String.format(config.lang.migrationFinished, result.migrated, result.failed));
+        });
+        return 1;
+    }
+
+    /**
+     * Shows a page of accounts, read in the background.
+     *
+     * @param source executioner of the command
+     * @param command command showing the next page, without the cursor
+     * @param after uuid to continue after, empty for the first page
+     * @param prefix prefix of uuids to search, empty for all accounts
+     * @param filter filter of accounts
+     * @return 1
+     */
+    private static int findAccounts(ServerCommandSource source, String command, String after, String prefix, Predicate<PlayerCache> filter) {
+        Entity sender = source.getEntity();
+        MinecraftServer server = source.getMinecraftServer();
+        THREADPOOL.submit(() -> {
+            AccountSearch.Page page = AccountSearch.find(after, prefix, filter);
+            List<LangMessage> lines = new ArrayList<>(page.accounts.size() + 1);
+            lines.add(new LangMessage("accountsFound", config.lang.accountsFound, page.accounts.size(), page.scanned));
+            for (AccountSearch.Account account : page.accounts) {
+                String lastIp = account.data.lastIp != null ? account.data.lastIp : "-";
+                String sessionUntil = account.data.validUntil > 0 ? DATE_FORMAT.format(Instant.ofEpochMilli(account.data.validUntil)) : "-";
+                if(account.data.password.isEmpty())
+                    lines.add(new LangMessage("accountNotRegistered", config.lang.accountNotRegistered, account.uuid, lastIp, sessionUntil));
+                else
+                    lines.add(new LangMessage("accountRegistered", config.lang.accountRegistered, account.uuid, lastIp, sessionUntil));
+            }
+            server.execute(() -> {
+                LangMessage.send(source, lines);
+                if(page.next == null)
+                    return;
+                String next = command + " " + page.next;
+                LangMessage nextPage = new LangMessage("accountsNextPage", config.lang.accountsNextPage, next);
+                if(sender != null)
+                    ((PlayerEntity) sender).sendMessage(nextPage.toText().styled(style -> style
+                            .withColor(Formatting.AQUA)
+                            .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, next))
+                    ), false);
+                else
+                    logInfo(nextPage.format());
+            });
+        });
+        return 1;
+    }
+
+    private static Predicate<PlayerCache> hasIp(String ip) {
+        return playerCache -> ip.equals(playerCache.lastIp);
+    }
+
+    /**
+     * Matches registered accounts which weren't online for given number of days.
+     * Last time is known from session expiration, which is set when authenticated player leaves
+     * (so with sessions disabled, all accounts match).
+     */
+    private static Predicate<PlayerCache> inactiveFor(int days) {
+        long leftBefore = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days) + Math.max(0, config.main.sessionTimeoutTime) * 1000L;
+        return playerCache -> !playerCache.password.isEmpty() && playerCache.validUntil < leftBefore;
+    }
+
+    /**
+     * Exports all accounts to a file in the background.
+     *
+     * @param source executioner of the command
+     * @param file file to export to, relative to mods/EasyAuth
+     * @return 0
+     */
+    private static int exportAccounts(ServerCommandSource source, String file) {
+        Entity sender = source.getEntity();
+        CompletableFuture<AccountTransfer.Result> export = AccountTransfer.exportAccounts(file);
+        if(export == null) {
+            if(sender != null)
+                ((PlayerEntity) sender).sendMessage(new TranslatableText("text.easyauth.transferRunning"), false);
+            else
+                logInfo(config.lang.transferRunning);
+            return 0;
+        }
+        audit(source, "export " + file);
+
+        if(sender != null)
+            ((PlayerEntity) sender).sendMessage(new TranslatableText("text.easyauth.exportStarted"), false);
+        else
+            logInfo(config.lang.exportStarted);
+
+        export.whenComplete((result, e) -> {
+            if(e != null) {
+                logError("Problem occurred when exporting accounts: " + e.getMessage());
+                if(sender != null)
+                    ((PlayerEntity) sender).sendMessage(new TranslatableText("text.easyauth.transferFailed"), false);
+                return;
+            }
+            if(sender != null)
+                ((PlayerEntity) sender).sendMessage(new TranslatableText("text.easyauth.exportFinished", result.accounts, result.invalid, result.getSeconds()), false);
+            else
+                logInfo(String.format(config.lang.exportFinished, result.accounts, result.invalid, result.getSeconds()));
+        });
+        return 1;
+    }
+
+    /**
+     * Imports accounts from a file in the background.
+     *
+     * @param source executioner of the command
+     * @param file file to import from, relative to mods/EasyAuth
+     * @param replace whether to overwrite existing accounts
+     * @return 0
+     */
+    private static int importAccounts(ServerCommandSource source, String file, boolean replace) {
+        Entity sender = source.getEntity();
+        CompletableFuture<AccountTransfer.Result> importing = AccountTransfer.importAccounts(source.getMinecraftServer(), file, replace);
+        if(importing == null) {
+            if(sender != null)
+                ((PlayerEntity) sender).sendMessage(new TranslatableText("text.easyauth.transferRunning"), false);
+            else
+                logInfo(config.lang.transferRunning);
+            return 0;
+        }
+        audit(source, "import " + file + (replace ? " replace" : ""));
+
+        if(sender != null)
+            ((PlayerEntity) sender).sendMessage(new TranslatableText("text.easyauth.importStarted"), false);
+        else
+            logInfo(config.lang.importStarted);
+
+        importing.whenComplete((result, e) -> {
+            if(e != null) {
+                logError("Problem occurred when importing accounts: " + e.getMessage());
+                if(sender != null)
+                    ((PlayerEntity) sender).sendMessage(new TranslatableText("text.easyauth.transferFailed"), false);
+                return;
+            }
+            if(sender != null)
+                ((PlayerEntity) sender).sendMessage(new TranslatableText("text.easyauth.importFinished", result.accounts, result.hashed, result.skipped, result.invalid, result.failed, result.getSeconds()), false);
+            else
+                logInfo(String.format(config.lang.importFinished, result.accounts, result.hashed, result.skipped, result.invalid, result.failed, result.getSeconds()));
+        });
+        return 1;
+    }
+
     /**
      * Deletes (unregisters) player's account.
      *
@@ -185,6 +564,7 @@ public class AuthCommand {
      */
     private static int removeAccount(ServerCommandSource source, String uuid) {
         Entity sender = source.getEntity();
+        audit(source, "remove " + uuid);
         THREADPOOL.submit(() -> {
             DB.deleteUserData(uuid);
             playerCacheMap.put(uuid, null);
@@ -208,8 +588,9 @@ public class AuthCommand {
     private static int registerUser(ServerCommandSource source, String uuid, String password) {
         // Getting the player who send the command
         Entity sender = source.getEntity();
+        audit(source, "register " + uuid);
 
-        THREADPOOL.submit(() -> {
+        HASHING.submit(HashingScheduler.Priority.ADMIN, "admin", () -> {
             PlayerCache playerCache;
             if(playerCacheMap.containsKey(uuid)) {
                 playerCache = playerCacheMap.get(uuid);
@@ -240,8 +621,9 @@ public class AuthCommand {
     private static int updatePassword(ServerCommandSource source, String uuid, String password) {
         // Getting the player who send the command
         Entity sender = source.getEntity();
+        audit(source, "update " + uuid);
 
-        THREADPOOL.submit(() -> {
+        HASHING.submit(HashingScheduler.Priority.ADMIN, "admin", () -> {
             PlayerCache playerCache;
             if(playerCacheMap.containsKey(uuid)) {
                 playerCache = playerCacheMap.get(uuid);
@@ -267,4 +649,15 @@ public class AuthCommand {
         });
         return 0;
     }
+
+    /**
+     * Records admin action to the audit log.
+     *
+     * @param source executioner of the command
+     * @param action action with its arguments (passwords must not be included)
+     */
+    private static void audit(ServerCommandSource source, String action) {
+        String ip = source.getEntity() instanceof ServerPlayerEntity player ? player.getIp() : null;
+        AuditLog.record(AuditLog.Type.ADMIN, source.getName(), ip, action);
+    }
 }
@@ -5,8 +5,13 @@ import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.TranslatableText;
+import xyz.nikitacartes.easyauth.storage.PlayerCache;
+import xyz.nikitacartes.easyauth.utils.AuditLog;
 import xyz.nikitacartes.easyauth.utils.AuthHelper;
+import xyz.nikitacartes.easyauth.utils.AuthMetrics;
+import xyz.nikitacartes.easyauth.utils.HashingScheduler;
 import xyz.nikitacartes.easyauth.utils.PlayerAuth;
+import xyz.nikitacartes.easyauth.utils.ProxyAuth;
 
 import static com.mojang.brigadier.arguments.StringArgumentType.getString;
 import static com.mojang.brigadier.arguments.StringArgumentType.word;
@@ -37,26 +42,41 @@ public class LoginCommand {
             player.sendMessage(new TranslatableText("text.easyauth.alreadyAuthenticated"), false);
             return 0;
         }
+        // Players logging in from the same IP as last time are verified first
+        PlayerCache playerCache = playerCacheMap.get(uuid);
+        String ip = player.getIp();
+        HashingScheduler.Priority priority = ip.equals(playerCache.lastIp) && playerCache.loginTries == 0 ?
+                HashingScheduler.Priority.TRUSTED_LOGIN :
+                HashingScheduler.Priority.LOGIN;
+
+        long start = System.nanoTime();
         // Putting rest of the command in different thread to avoid lag spikes
-        THREADPOOL.submit(() -> {
+        HASHING.submit(priority, ip, () -> {
             int maxLoginTries = config.main.maxLoginTries;
             AuthHelper.PasswordOptions passwordResult = AuthHelper.checkPassword(uuid, pass.toCharArray());
+            AuthMetrics.LOGIN.recordSince(start);
+            if(passwordResult == AuthHelper.PasswordOptions.WRONG)
+                AuthMetrics.LOGIN_FAILURES.increment();
 
             if(playerCacheMap.get(uuid).loginTries >= maxLoginTries && maxLoginTries != -1) {
+                AuditLog.record(AuditLog.Type.LOGIN_FAILED, player.getGameProfile().getName(), ip, "tries exceeded");
                 player.networkHandler.disconnect(new TranslatableText("text.easyauth.loginTriesExceeded"));
                 return;
             }
             else if(passwordResult == AuthHelper.PasswordOptions.CORRECT) {
+                AuditLog.record(AuditLog.Type.LOGIN, player.getGameProfile().getName(), ip, "password");
                 player.sendMessage(new TranslatableText("text.easyauth.successfullyAuthenticated"), false);
                 ((PlayerAuth) player).setAuthenticated(true);
+                ProxyAuth.notifyLogin(player);
                 return;
             }
             else if(passwordResult == AuthHelper.PasswordOptions.NOT_REGISTERED) {
                 player.sendMessage(new TranslatableText("text.easyauth.registerRequired"), false);
                 return;
             }
+            AuditLog.record(AuditLog.Type.LOGIN_FAILED, player.getGameProfile().getName(), ip, "wrong password");
             // Kicking the player out
-            else if(maxLoginTries == 1) {
+            if(maxLoginTries == 1) {
                 player.networkHandler.disconnect(new TranslatableText("text.easyauth.wrongPassword"));
                 return;
             }
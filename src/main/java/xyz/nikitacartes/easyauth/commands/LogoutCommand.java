@@ -5,11 +5,12 @@ import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.TranslatableText;
+import xyz.nikitacartes.easyauth.utils.AuditLog;
 import xyz.nikitacartes.easyauth.utils.PlayerAuth;
+import xyz.nikitacartes.easyauth.utils.ProxyAuth;
 
 import static net.minecraft.server.command.CommandManager.literal;
 import static xyz.nikitacartes.easyauth.EasyAuth.config;
-import static xyz.nikitacartes.easyauth.EasyAuth.mojangAccountNamesCache;
 
 public class LogoutCommand {
 
@@ -23,9 +24,11 @@ public class LogoutCommand {
     private static int logout(ServerCommandSource serverCommandSource) throws CommandSyntaxException {
         ServerPlayerEntity player = serverCommandSource.getPlayer();
 
-        if(!mojangAccountNamesCache.contains(player.getGameProfile().getName().toLowerCase())) {
+        if(!((PlayerAuth) player).isUsingMojangAccount()) {
             ((PlayerAuth) player).setAuthenticated(false);
             player.sendMessage(new TranslatableText("text.easyauth.successfulLogout"), false);
+            ProxyAuth.notifyLogout(player);
+            AuditLog.record(AuditLog.Type.LOGOUT, player.getGameProfile().getName(), player.getIp(), null);
         }
         else
             player.sendMessage(new TranslatableText("text.easyauth.cannotLogout"), false);
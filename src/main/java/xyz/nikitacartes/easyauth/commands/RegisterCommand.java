@@ -6,7 +6,11 @@ import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.TranslatableText;
 import xyz.nikitacartes.easyauth.storage.PlayerCache;
+import xyz.nikitacartes.easyauth.utils.AuditLog;
+import xyz.nikitacartes.easyauth.utils.AuthMetrics;
+import xyz.nikitacartes.easyauth.utils.HashingScheduler;
 import xyz.nikitacartes.easyauth.utils.PlayerAuth;
+import xyz.nikitacartes.easyauth.utils.ProxyAuth;
 
 import static com.mojang.brigadier.arguments.StringArgumentType.getString;
 import static com.mojang.brigadier.arguments.StringArgumentType.word;
@@ -47,8 +51,9 @@ public class RegisterCommand {
             player.sendMessage(new TranslatableText("text.easyauth.matchPassword"), false);
             return 0;
         }
+        long start = System.nanoTime();
         // Different thread to avoid lag spikes
-        THREADPOOL.submit(() -> {
+        HASHING.submit(HashingScheduler.Priority.REGISTER, player.getIp(), () -> {
             if(pass1.length() < config.main.minPasswordChars) {
                 player.sendMessage(new TranslatableText("text.easyauth.minPasswordChars", config.main.minPasswordChars), false);
                 return;
@@ -64,6 +69,9 @@ public class RegisterCommand {
                 player.sendMessage(new TranslatableText("text.easyauth.registerSuccess"), false);
 
                 playerCache.password = hashPassword(pass1.toCharArray());
+                ProxyAuth.notifyLogin(player);
+                AuthMetrics.REGISTER.recordSince(start);
+                AuditLog.record(AuditLog.Type.REGISTER, player.getGameProfile().getName(), player.getIp(), null);
                 return;
             }
             player.sendMessage(new TranslatableText("text.easyauth.alreadyRegistered"), false);
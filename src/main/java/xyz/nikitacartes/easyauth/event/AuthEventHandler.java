@@ -11,14 +11,17 @@ import net.minecraft.text.LiteralText;
 import net.minecraft.util.ActionResult;
 import net.minecraft.util.TypedActionResult;
 import net.minecraft.util.math.BlockPos;
+import xyz.nikitacartes.easyauth.storage.AuthPolicy;
 import xyz.nikitacartes.easyauth.storage.PlayerCache;
+import xyz.nikitacartes.easyauth.utils.AuthMetrics;
 import xyz.nikitacartes.easyauth.utils.PlayerAuth;
+import xyz.nikitacartes.easyauth.utils.ProxyAuth;
 
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static xyz.nikitacartes.easyauth.EasyAuth.config;
 import static xyz.nikitacartes.easyauth.EasyAuth.playerCacheMap;
+import static xyz.nikitacartes.easyauth.EasyAuth.policy;
 /**
  * This class will take care of actions players try to do,
  * and cancel them if they aren't authenticated
@@ -39,10 +42,7 @@ public class AuthEventHandler {
         PlayerEntity onlinePlayer = manager.getPlayer(incomingPlayerUsername);
 
         // Checking if player username is valid
-        String regex = config.main.usernameRegex;
-
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(incomingPlayerUsername);
+        Pattern pattern = policy.usernamePattern;
 
         if((onlinePlayer != null && !((PlayerAuth) onlinePlayer).canSkipAuth()) && config.experimental.preventAnotherLocationKick) {
             // Player needs to be kicked, since there's already a player with that name
@@ -53,10 +53,10 @@ public class AuthEventHandler {
                     )
             );
         }
-        else if(!matcher.matches()) {
+        else if(!pattern.matcher(incomingPlayerUsername).matches()) {
             return new LiteralText(
                     String.format(
-                            config.lang.disallowedUsername, regex
+                            config.lang.disallowedUsername, pattern.pattern()
                     )
             );
         }
@@ -74,10 +74,12 @@ public class AuthEventHandler {
 
         if(!playerCacheMap.containsKey(uuid)) {
             // First join
+            AuthMetrics.PLAYER_CACHE_MISSES.increment();
             playerCache = PlayerCache.fromJson(player, uuid);
             playerCacheMap.put(uuid, playerCache);
         }
         else {
+            AuthMetrics.PLAYER_CACHE_HITS.increment();
             playerCache = playerCacheMap.get(uuid);
         }
 
@@ -87,8 +89,14 @@ public class AuthEventHandler {
             player.getIp().equals(playerCache.lastIp)
         ) {
             // Valid session
+            ProxyAuth.notifyLogin(player);
+            // Cache wasn't loaded yet when player was sent to limbo
+            if(((PlayerAuth) player).isInLimbo())
+                ((PlayerAuth) player).setAuthenticated(true);
             return;
         }
+        // Proxy may vouch for the player, prompt is delayed until it answers
+        ProxyAuth.challenge(player);
         ((PlayerAuth) player).setAuthenticated(false);
 
 
@@ -109,6 +117,7 @@ public class AuthEventHandler {
     }
 
     public static void onPlayerLeave(ServerPlayerEntity player) {
+        ProxyAuth.onPlayerLeave(player);
         if(((PlayerAuth) player).canSkipAuth())
             return;
         String uuid = ((PlayerAuth) player).getFakeUuid();
@@ -122,7 +131,7 @@ public class AuthEventHandler {
             if(config.main.sessionTimeoutTime != -1)
                 playerCache.validUntil = System.currentTimeMillis() + config.main.sessionTimeoutTime * 1000L;
         }
-        else if(config.main.spawnOnJoin) {
+        else if(config.main.spawnOnJoin && !((PlayerAuth) player).isInLimbo()) {
             ((PlayerAuth) player).hidePosition(false);
 
             player.setInvulnerable(false);
@@ -137,9 +146,9 @@ public class AuthEventHandler {
             !((PlayerAuth) player).isAuthenticated() &&
             !message.startsWith("/login") &&
             !message.startsWith("/register") &&
-            (!config.experimental.allowChat || message.startsWith("/"))
+            (!policy.isAllowed(AuthPolicy.CHAT) || message.startsWith("/"))
         ) {
-            player.sendMessage(((PlayerAuth) player).getAuthMessage(), false);
+            ((PlayerAuth) player).sendAuthMessage();
             return ActionResult.FAIL;
         }
         return ActionResult.PASS;
@@ -150,7 +159,7 @@ public class AuthEventHandler {
         // Player will fall if enabled (prevent fly kick)
         boolean auth = ((PlayerAuth) player).isAuthenticated();
         // Otherwise movement should be disabled
-        if(!auth && !config.experimental.allowMovement) {
+        if(!auth && !policy.isAllowed(AuthPolicy.MOVEMENT)) {
             if(!player.isInvulnerable())
                 player.setInvulnerable(true);
             return ActionResult.FAIL;
@@ -160,8 +169,8 @@ public class AuthEventHandler {
 
     // Using a block (right-click function)
     public static ActionResult onUseBlock(PlayerEntity player) {
-        if(!((PlayerAuth) player).isAuthenticated() && !config.experimental.allowBlockUse) {
-            player.sendMessage(((PlayerAuth) player).getAuthMessage(), false);
+        if(!((PlayerAuth) player).isAuthenticated() && !policy.isAllowed(AuthPolicy.BLOCK_USE)) {
+            ((PlayerAuth) player).sendAuthMessage();
             return ActionResult.FAIL;
         }
         return ActionResult.PASS;
@@ -169,8 +178,8 @@ public class AuthEventHandler {
 
     // Breaking a block
     public static boolean onBreakBlock(PlayerEntity player) {
-        if(!((PlayerAuth) player).isAuthenticated() && !config.experimental.allowBlockPunch) {
-            player.sendMessage(((PlayerAuth) player).getAuthMessage(), false);
+        if(!((PlayerAuth) player).isAuthenticated() && !policy.isAllowed(AuthPolicy.BLOCK_PUNCH)) {
+            ((PlayerAuth) player).sendAuthMessage();
             return false;
         }
         return true;
@@ -178,8 +187,8 @@ public class AuthEventHandler {
 
     // Using an item
     public static TypedActionResult<ItemStack> onUseItem(PlayerEntity player) {
-        if(!((PlayerAuth) player).isAuthenticated() && !config.experimental.allowItemUse) {
-            player.sendMessage(((PlayerAuth) player).getAuthMessage(), false);
+        if(!((PlayerAuth) player).isAuthenticated() && !policy.isAllowed(AuthPolicy.ITEM_USE)) {
+            ((PlayerAuth) player).sendAuthMessage();
             return TypedActionResult.fail(ItemStack.EMPTY);
         }
 
@@ -187,16 +196,16 @@ public class AuthEventHandler {
     }
     // Dropping an item
     public static ActionResult onDropItem(PlayerEntity player) {
-        if(!((PlayerAuth) player).isAuthenticated() && !config.experimental.allowItemDrop) {
-            player.sendMessage(((PlayerAuth) player).getAuthMessage(), false);
+        if(!((PlayerAuth) player).isAuthenticated() && !policy.isAllowed(AuthPolicy.ITEM_DROP)) {
+            ((PlayerAuth) player).sendAuthMessage();
             return ActionResult.FAIL;
         }
         return ActionResult.PASS;
     }
     // Changing inventory (item moving etc.)
     public static ActionResult onTakeItem(ServerPlayerEntity player) {
-        if(!((PlayerAuth) player).isAuthenticated() && !config.experimental.allowItemMoving) {
-            player.sendMessage(((PlayerAuth) player).getAuthMessage(), false);
+        if(!((PlayerAuth) player).isAuthenticated() && !policy.isAllowed(AuthPolicy.ITEM_MOVING)) {
+            ((PlayerAuth) player).sendAuthMessage();
             return ActionResult.FAIL;
         }
 
@@ -204,8 +213,8 @@ public class AuthEventHandler {
     }
     // Attacking an entity
     public static ActionResult onAttackEntity(PlayerEntity player) {
-        if(!((PlayerAuth) player).isAuthenticated() && !config.experimental.allowEntityPunch) {
-            player.sendMessage(((PlayerAuth) player).getAuthMessage(), false);
+        if(!((PlayerAuth) player).isAuthenticated() && !policy.isAllowed(AuthPolicy.ENTITY_PUNCH)) {
+            ((PlayerAuth) player).sendAuthMessage();
             return ActionResult.FAIL;
         }
 
@@ -213,8 +222,8 @@ public class AuthEventHandler {
     }
     // Interacting with entity
     public static ActionResult onUseEntity(PlayerEntity player) {
-        if(!((PlayerAuth) player).isAuthenticated() && !config.main.allowEntityInteract) {
-            player.sendMessage(((PlayerAuth) player).getAuthMessage(), false);
+        if(!((PlayerAuth) player).isAuthenticated() && !policy.isAllowed(AuthPolicy.ENTITY_INTERACT)) {
+            ((PlayerAuth) player).sendAuthMessage();
             return ActionResult.FAIL;
         }
 
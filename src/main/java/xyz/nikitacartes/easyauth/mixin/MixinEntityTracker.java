@@ -0,0 +1,25 @@
+package xyz.nikitacartes.easyauth.mixin;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.server.network.ServerPlayerEntity;
+import xyz.nikitacartes.easyauth.utils.Limbo;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(targets = "net.minecraft.server.world.ThreadedAnvilChunkStorage$EntityTracker")
+public abstract class MixinEntityTracker {
+    @Final
+    @Shadow
+    Entity entity;
+
+    // Players in limbo all stand in the same spot, tracking each other would send packets to every pair of them
+    @Inject(method = "updateTrackedStatus(Lnet/minecraft/server/network/ServerPlayerEntity;)V", at = @At("HEAD"), cancellable = true)
+    private void hideLimboPlayers(ServerPlayerEntity player, CallbackInfo ci) {
+        if(player != this.entity && player.getServerWorld().getRegistryKey() == Limbo.WORLD)
+            ci.cancel();
+    }
+}
@@ -5,17 +5,21 @@ import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.server.ServerAdvancementLoader;
 import net.minecraft.server.network.ServerPlayerEntity;
 import xyz.nikitacartes.easyauth.utils.PlayerAuth;
+import xyz.nikitacartes.easyauth.utils.PlayerDataPrefetch;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Mutable;
 import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import static xyz.nikitacartes.easyauth.EasyAuth.config;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
 
 @Mixin(PlayerAdvancementTracker.class)
 public class MixinPlayerAdvancementTracker {
@@ -37,6 +41,18 @@ public class MixinPlayerAdvancementTracker {
         }
     }
 
+    // Uses advancements that were read in the background while player was logging in
+    @Redirect(
+            method = "load(Lnet/minecraft/server/ServerAdvancementLoader;)V",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lcom/google/common/io/Files;toString(Ljava/io/File;Ljava/nio/charset/Charset;)Ljava/lang/String;"
+            )
+    )
+    private String readPrefetchedAdvancements(File file, Charset charset) throws IOException {
+        return PlayerDataPrefetch.readString(file);
+    }
+
     @Inject(method = "load(Lnet/minecraft/server/ServerAdvancementLoader;)V",  at = @At("TAIL"))
     private void endMigratingOfflineAdvancements(ServerAdvancementLoader advancementLoader, CallbackInfo ci) {
         if(config.main.premiumAutologin && !config.experimental.forcedOfflineUuids && ((PlayerAuth) this.owner).isUsingMojangAccount()) {
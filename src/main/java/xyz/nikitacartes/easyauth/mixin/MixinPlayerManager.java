@@ -2,17 +2,26 @@ package xyz.nikitacartes.easyauth.mixin;
 
 import com.mojang.authlib.GameProfile;
 import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.nbt.NbtCompound;
 import net.minecraft.network.ClientConnection;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.PlayerManager;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.stat.ServerStatHandler;
 import net.minecraft.text.LiteralText;
 import net.minecraft.text.Text;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.World;
 import xyz.nikitacartes.easyauth.event.AuthEventHandler;
+import xyz.nikitacartes.easyauth.utils.Limbo;
 import xyz.nikitacartes.easyauth.utils.PlayerAuth;
+import xyz.nikitacartes.easyauth.utils.PlayerDataPrefetch;
+import xyz.nikitacartes.easyauth.utils.PremiumDecision;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 import org.spongepowered.asm.mixin.injection.callback.LocalCapture;
@@ -26,8 +35,42 @@ import static xyz.nikitacartes.easyauth.EasyAuth.config;
 @Mixin(PlayerManager.class)
 public abstract class MixinPlayerManager {
 
+    @Inject(method = "onPlayerConnect(Lnet/minecraft/network/ClientConnection;Lnet/minecraft/server/network/ServerPlayerEntity;)V", at = @At("HEAD"))
+    private void holdInLimbo(ClientConnection clientConnection, ServerPlayerEntity serverPlayerEntity, CallbackInfo ci) {
+        if(Limbo.shouldHold(serverPlayerEntity, clientConnection.getAddress()))
+            ((PlayerAuth) serverPlayerEntity).holdInLimbo();
+    }
+
+    // Data of players in limbo is loaded once they authenticate
+    @Redirect(
+            method = "onPlayerConnect(Lnet/minecraft/network/ClientConnection;Lnet/minecraft/server/network/ServerPlayerEntity;)V",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lnet/minecraft/server/PlayerManager;loadPlayerData(Lnet/minecraft/server/network/ServerPlayerEntity;)Lnet/minecraft/nbt/NbtCompound;"
+            )
+    )
+    private NbtCompound skipLimboData(PlayerManager manager, ServerPlayerEntity player) {
+        if(((PlayerAuth) player).isInLimbo())
+            return null;
+        return manager.loadPlayerData(player);
+    }
+
+    @Redirect(
+            method = "onPlayerConnect(Lnet/minecraft/network/ClientConnection;Lnet/minecraft/server/network/ServerPlayerEntity;)V",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lnet/minecraft/server/MinecraftServer;getWorld(Lnet/minecraft/util/registry/RegistryKey;)Lnet/minecraft/server/world/ServerWorld;"
+            )
+    )
+    private ServerWorld joinLimboWorld(MinecraftServer server, RegistryKey<World> key, ClientConnection clientConnection, ServerPlayerEntity player) {
+        if(((PlayerAuth) player).isInLimbo())
+            return Limbo.getWorld(server);
+        return server.getWorld(key);
+    }
+
     @Inject(method = "onPlayerConnect(Lnet/minecraft/network/ClientConnection;Lnet/minecraft/server/network/ServerPlayerEntity;)V", at = @At("RETURN"))
     private void onPlayerConnect(ClientConnection clientConnection, ServerPlayerEntity serverPlayerEntity, CallbackInfo ci) {
+        PremiumDecision.finishJoining(serverPlayerEntity.getGameProfile().getName());
         AuthEventHandler.onPlayerJoin(serverPlayerEntity);
     }
 
@@ -36,6 +79,18 @@ public abstract class MixinPlayerManager {
         AuthEventHandler.onPlayerLeave(serverPlayerEntity);
     }
 
+    /**
+     * Skips saving data (playerdata, stats and advancements) of players in limbo,
+     * as their data wasn't loaded and saving would overwrite it.
+     */
+    @Inject(method = "savePlayerData(Lnet/minecraft/server/network/ServerPlayerEntity;)V", at = @At("HEAD"), cancellable = true)
+    private void savePlayerData(ServerPlayerEntity player, CallbackInfo ci) {
+        // Files are about to change, so data read in advance is outdated
+        PlayerDataPrefetch.invalidate(player.server, player.getUuid());
+        if(((PlayerAuth) player).isInLimbo())
+            ci.cancel();
+    }
+
     @Inject(method = "checkCanJoin(Ljava/net/SocketAddress;Lcom/mojang/authlib/GameProfile;)Lnet/minecraft/text/Text;", at = @At("HEAD"), cancellable = true)
     private void checkCanJoin(SocketAddress socketAddress, GameProfile profile, CallbackInfoReturnable<Text> cir) {
         // Getting the player that is trying to join the server
@@ -2,23 +2,32 @@ package xyz.nikitacartes.easyauth.mixin;
 
 import com.mojang.authlib.GameProfile;
 import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.ClientConnection;
 import net.minecraft.network.packet.c2s.login.LoginHelloC2SPacket;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.PlayerManager;
 import net.minecraft.server.network.ServerLoginNetworkHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
+import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import xyz.nikitacartes.easyauth.storage.AuthPolicy;
+import xyz.nikitacartes.easyauth.utils.AuditLog;
+import xyz.nikitacartes.easyauth.utils.MojangApi;
+import xyz.nikitacartes.easyauth.utils.PlayerDataPrefetch;
+import xyz.nikitacartes.easyauth.utils.PremiumDecision;
 
-import javax.net.ssl.HttpsURLConnection;
-import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.UUID;
 
 import static xyz.nikitacartes.easyauth.EasyAuth.*;
-import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
 
 @Mixin(ServerLoginNetworkHandler.class)
 public abstract class MixinServerLoginNetworkHandler {
@@ -30,6 +39,29 @@ public abstract class MixinServerLoginNetworkHandler {
 
     @Shadow private ServerLoginNetworkHandler.State state;
 
+    @Shadow @Final private MinecraftServer server;
+
+    @Shadow @Final public ClientConnection connection;
+
+    @Shadow public abstract void onHello(LoginHelloC2SPacket packet);
+
+    @Unique
+    private boolean mojangLookupPending = false;
+
+    @Unique
+    private boolean mojangLookupDone = false;
+
+    // Result of Mojang API lookup, null if it failed
+    @Unique
+    private Boolean hasMojangAccount;
+
+    @Unique
+    private UUID onlineUuid;
+
+    // Whether player is let in with a Mojang account, null if mod didn't decide
+    @Unique
+    private Boolean premium;
+
     @Inject(method = "acceptPlayer()V", at = @At("HEAD"))
     private void acceptPlayer(CallbackInfo ci) {
         if(config.experimental.forcedOfflineUuids) {
@@ -37,10 +69,34 @@ public abstract class MixinServerLoginNetworkHandler {
         }
     }
 
+    /**
+     * Passes the decision to the player entity, which can't rely on cache, as it might not keep the status.
+     */
+    @Redirect(
+            method = "acceptPlayer()V",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lnet/minecraft/server/PlayerManager;createPlayer(Lcom/mojang/authlib/GameProfile;)Lnet/minecraft/server/network/ServerPlayerEntity;"
+            )
+    )
+    private ServerPlayerEntity createPlayer(PlayerManager playerManager, GameProfile profile) {
+        if(this.premium == null)
+            return playerManager.createPlayer(profile);
+        PremiumDecision.begin(profile.getName(), this.premium);
+        try {
+            return playerManager.createPlayer(profile);
+        } finally {
+            PremiumDecision.end();
+        }
+    }
+
     /**
      * Checks whether the player has purchased an account.
      * If so, server is presented as online, and continues as in normal-online mode.
      * Otherwise, player is marked as ready to be accepted into the game.
+     * <p>
+     * If the account needs to be checked with Mojang API, handling of the packet is paused
+     * and this method is called again with the result once it arrives, so the network thread isn't blocked.
      * @param packet
      * @param ci
      */
@@ -55,46 +111,114 @@ public abstract class MixinServerLoginNetworkHandler {
     )
     private void checkPremium(LoginHelloC2SPacket packet, CallbackInfo ci) {
         if(config.main.premiumAutologin) {
-            try {
-                String playername = packet.getProfile().getName().toLowerCase();
-                Pattern pattern = Pattern.compile("^[a-z0-9_]{3,16}$");
-                Matcher matcher = pattern.matcher(playername);
-                if(playerCacheMap.containsKey(PlayerEntity.getOfflinePlayerUuid(playername).toString()) || !matcher.matches() || config.main.forcedOfflinePlayers.contains(playername)) {
-                    // Player definitely doesn't have a mojang account
-                    state = ServerLoginNetworkHandler.State.READY_TO_ACCEPT;
-
-                    this.profile = packet.getProfile();
-                    ci.cancel();
+            String playername = packet.getProfile().getName().toLowerCase();
+            if(playerCacheMap.containsKey(PlayerEntity.getOfflinePlayerUuid(playername).toString()) || !AuthPolicy.PREMIUM_NAME.matcher(playername).matches() || policy.forcedOfflinePlayers.contains(playername)) {
+                // Player definitely doesn't have a mojang account
+                this.auditPremium(playername, "offline (registered or not a premium name)");
+                this.acceptOffline(packet, ci);
+            }
+            else if(this.mojangLookupDone) {
+                // Packet was handled again, with result from Mojang API
+                this.mojangLookupDone = false;
+                if(this.hasMojangAccount != null) {
+                    // Caches the request
+                    mojangAccountNamesCache.put(playername, this.hasMojangAccount);
+                }
+                if(Boolean.FALSE.equals(this.hasMojangAccount) || (this.hasMojangAccount == null && !config.experimental.premiumOnMojangApiFailure)) {
+                    // Player doesn't have a Mojang account (or API failed and such players are let in as offline)
+                    this.auditPremium(playername, this.hasMojangAccount == null ? "offline (Mojang API failed)" : "offline (no Mojang account)");
+                    this.acceptOffline(packet, ci);
                 }
-                else if(!mojangAccountNamesCache.contains(playername))  {
+                else {
+                    // Otherwise authentication continues in original method
+                    this.premium = true;
+                    PremiumDecision.startJoining(playername);
+                    this.auditPremium(playername, this.hasMojangAccount == null ? "premium (Mojang API failed)" : "premium");
+                    if(this.onlineUuid != null)
+                        this.prefetchPremium(packet);
+                }
+            }
+            else if(this.mojangLookupPending) {
+                // Duplicate packet, the first one is still being handled
+                ci.cancel();
+            }
+            else {
+                Boolean cached = mojangAccountNamesCache.get(playername);
+                if(Boolean.FALSE.equals(cached)) {
+                    // Player is known not to have a Mojang account
+                    this.auditPremium(playername, "offline (cached)");
+                    this.acceptOffline(packet, ci);
+                }
+                else if(cached == null) {
                     // Checking account status from API
-                    HttpsURLConnection httpsURLConnection = (HttpsURLConnection) new URL("https://api.mojang.com/users/profiles/minecraft/" + playername).openConnection();
-                    httpsURLConnection.setRequestMethod("GET");
-                    httpsURLConnection.setConnectTimeout(5000);
-                    httpsURLConnection.setReadTimeout(5000);
-
-                    int response = httpsURLConnection.getResponseCode();
-                    if (response == HttpURLConnection.HTTP_OK) {
-                        // Player has a Mojang account
-                        httpsURLConnection.disconnect();
-
-
-                        // Caches the request
-                        mojangAccountNamesCache.add(playername);
-                        // Authentication continues in original method
-                    }
-                    else if(response == HttpURLConnection.HTTP_NO_CONTENT) {
-                        // Player doesn't have a Mojang account
-                        httpsURLConnection.disconnect();
-                        state = ServerLoginNetworkHandler.State.READY_TO_ACCEPT;
-
-                        this.profile = packet.getProfile();
-                        ci.cancel();
-                    }
+                    // Login stays paused in HELLO state, vanilla login timeout still applies
+                    this.mojangLookupPending = true;
+                    ci.cancel();
+                    // Failures are logged by MojangApi, once per outage
+                    MojangApi.getOnlineUuid(playername).whenComplete((uuid, e) -> {
+                        server.execute(() -> {
+                            this.mojangLookupPending = false;
+                            if(!this.connection.isOpen())
+                                return;
+                            this.onlineUuid = uuid;
+                            this.hasMojangAccount = e == null ? uuid != null : null;
+                            this.mojangLookupDone = true;
+                            this.onHello(packet);
+                        });
+                    });
+                }
+                else {
+                    // Player has a Mojang account, authentication continues in original method
+                    this.premium = true;
+                    PremiumDecision.startJoining(playername);
+                    this.auditPremium(playername, "premium (cached)");
                 }
-            } catch (IOException e) {
-                logError(e.getMessage());
             }
         }
     }
+
+    @Inject(method = "onDisconnected(Lnet/minecraft/text/Text;)V", at = @At("HEAD"))
+    private void onDisconnected(Text reason, CallbackInfo ci) {
+        if(Boolean.TRUE.equals(this.premium) && this.profile != null)
+            PremiumDecision.finishJoining(this.profile.getName());
+    }
+
+    /**
+     * Records whether the player was let in as premium or offline.
+     */
+    @Unique
+    private void auditPremium(String playername, String decision) {
+        SocketAddress address = this.connection.getAddress();
+        String ip = address instanceof InetSocketAddress inetAddress ? inetAddress.getAddress().getHostAddress() : String.valueOf(address);
+        AuditLog.record(AuditLog.Type.PREMIUM_DECISION, playername, ip, decision);
+    }
+
+    /**
+     * Lets the player in as offline one, without checking encryption and session.
+     */
+    @Unique
+    private void acceptOffline(LoginHelloC2SPacket packet, CallbackInfo ci) {
+        state = ServerLoginNetworkHandler.State.READY_TO_ACCEPT;
+        this.premium = false;
+
+        this.profile = packet.getProfile();
+        ci.cancel();
+    }
+
+    /**
+     * Starts reading data of a player who was let in as premium,
+     * while encryption and session are being checked.
+     * Data of offline players isn't read in advance, as anyone can send a login packet with their name.
+     */
+    @Unique
+    private void prefetchPremium(LoginHelloC2SPacket packet) {
+        UUID offlineUuid = PlayerEntity.getOfflinePlayerUuid(packet.getProfile().getName());
+        if(config.experimental.forcedOfflineUuids)
+            PlayerDataPrefetch.prefetch(this.server, offlineUuid);
+        else {
+            PlayerDataPrefetch.prefetch(this.server, this.onlineUuid);
+            // Offline data is migrated if there's no online one yet
+            PlayerDataPrefetch.prefetchOffline(this.server, offlineUuid, this.onlineUuid);
+        }
+    }
 }
@@ -1,15 +1,21 @@
 package xyz.nikitacartes.easyauth.mixin;
 
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.network.packet.c2s.play.CreativeInventoryActionC2SPacket;
+import net.minecraft.network.packet.c2s.play.CustomPayloadC2SPacket;
 import net.minecraft.network.packet.c2s.play.PlayerActionC2SPacket;
 import net.minecraft.network.packet.c2s.play.PlayerMoveC2SPacket;
 import net.minecraft.server.filter.TextStream;
 import net.minecraft.server.network.ServerPlayNetworkHandler;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.ActionResult;
+import net.minecraft.util.math.Vec3d;
 import xyz.nikitacartes.easyauth.event.AuthEventHandler;
+import xyz.nikitacartes.easyauth.utils.HookProfiler;
+import xyz.nikitacartes.easyauth.utils.ProxyAuth;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
@@ -21,6 +27,18 @@ public abstract class MixinServerPlayNetworkHandler {
     @Shadow
     public ServerPlayerEntity player;
 
+    @Shadow
+    private Vec3d requestedTeleportPos;
+
+    @Shadow
+    private int ticks;
+
+    @Shadow
+    private int teleportRequestTick;
+
+    @Shadow
+    public abstract void requestTeleport(double x, double y, double z, float yaw, float pitch);
+
     @Inject(
             method = "handleMessage(Lnet/minecraft/server/filter/TextStream$Message;)V",
             at = @At(
@@ -31,10 +49,12 @@ public abstract class MixinServerPlayNetworkHandler {
             cancellable = true
     )
     private void onPlayerChat(TextStream.Message message, CallbackInfo ci) {
+        long start = HookProfiler.start();
         ActionResult result = AuthEventHandler.onPlayerChat(this.player, message.getFiltered());
         if (result == ActionResult.FAIL) {
             ci.cancel();
         }
+        HookProfiler.end(HookProfiler.Hook.CHAT, start);
     }
 
     @Inject(
@@ -47,12 +67,14 @@ public abstract class MixinServerPlayNetworkHandler {
             cancellable = true
     )
     private void onPlayerAction(PlayerActionC2SPacket packet, CallbackInfo ci) {
+        long start = HookProfiler.start();
         if(packet.getAction() == SWAP_ITEM_WITH_OFFHAND) {
             ActionResult result = AuthEventHandler.onTakeItem(this.player);
             if (result == ActionResult.FAIL) {
                 ci.cancel();
             }
         }
+        HookProfiler.end(HookProfiler.Hook.PLAYER_ACTION, start);
     }
     @Inject(
             method="onPlayerMove(Lnet/minecraft/network/packet/c2s/play/PlayerMoveC2SPacket;)V",
@@ -65,11 +87,31 @@ public abstract class MixinServerPlayNetworkHandler {
             cancellable = true
     )
     private void onPlayerMove(PlayerMoveC2SPacket playerMoveC2SPacket, CallbackInfo ci) {
+        long start = HookProfiler.start();
+        this.checkPlayerMove(playerMoveC2SPacket, ci);
+        HookProfiler.end(HookProfiler.Hook.PLAYER_MOVE, start);
+    }
+
+    @Unique
+    private void checkPlayerMove(PlayerMoveC2SPacket playerMoveC2SPacket, CallbackInfo ci) {
         ActionResult result = AuthEventHandler.onPlayerMove(player);
         if (result == ActionResult.FAIL) {
-            // A bit ugly, I know. (we need to update player position)
-            player.networkHandler.requestTeleport(player.getX(), player.getY(), player.getZ(), player.getYaw(), player.getPitch());
             ci.cancel();
+            if(this.requestedTeleportPos != null) {
+                // Previous correction isn't confirmed yet, resending it only if it seems to be lost (same as vanilla)
+                if(this.ticks - this.teleportRequestTick > 20)
+                    this.requestTeleport(this.requestedTeleportPos.x, this.requestedTeleportPos.y, this.requestedTeleportPos.z, player.getYaw(), player.getPitch());
+                return;
+            }
+            // Nothing to correct if player didn't move (e.g. only looked around)
+            if(
+                playerMoveC2SPacket.getX(player.getX()) == player.getX() &&
+                playerMoveC2SPacket.getY(player.getY()) == player.getY() &&
+                playerMoveC2SPacket.getZ(player.getZ()) == player.getZ()
+            )
+                return;
+            // Requesting teleport marks it as pending, so there's at most one correction until client confirms it
+            this.requestTeleport(player.getX(), player.getY(), player.getZ(), player.getYaw(), player.getPitch());
         }
     }
 
@@ -83,6 +125,7 @@ public abstract class MixinServerPlayNetworkHandler {
             cancellable = true
     )
     public void onCreativeInventoryAction(CreativeInventoryActionC2SPacket packet, CallbackInfo ci) {
+        long start = HookProfiler.start();
         ActionResult result = AuthEventHandler.onTakeItem(this.player);
 
         if (result == ActionResult.FAIL) {
@@ -90,5 +133,19 @@ public abstract class MixinServerPlayNetworkHandler {
             // Updating is not working yet
             ci.cancel();
         }
+        HookProfiler.end(HookProfiler.Hook.CREATIVE_INVENTORY, start);
+    }
+
+    @Inject(method = "onCustomPayload(Lnet/minecraft/network/packet/c2s/play/CustomPayloadC2SPacket;)V", at = @At("HEAD"), cancellable = true)
+    private void onCustomPayload(CustomPayloadC2SPacket packet, CallbackInfo ci) {
+        CustomPayloadC2SPacketAccessor payload = (CustomPayloadC2SPacketAccessor) packet;
+        if(!ProxyAuth.CHANNEL.equals(payload.getChannel()))
+            return;
+        ci.cancel();
+        // Packet is handled on network thread, reading it before it's released
+        PacketByteBuf buf = payload.getData();
+        byte[] data = new byte[buf.readableBytes()];
+        buf.readBytes(data);
+        this.player.server.execute(() -> ProxyAuth.onMessage(this.player, data));
     }
 }
@@ -7,16 +7,19 @@ import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
 import net.minecraft.text.TranslatableText;
 import net.minecraft.util.ActionResult;
-import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.registry.Registry;
-import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
 
 import xyz.nikitacartes.easyauth.event.AuthEventHandler;
 import xyz.nikitacartes.easyauth.storage.PlayerCache;
 import xyz.nikitacartes.easyauth.utils.CarpetHelper;
+import xyz.nikitacartes.easyauth.utils.HookProfiler;
+import xyz.nikitacartes.easyauth.utils.Limbo;
 import xyz.nikitacartes.easyauth.utils.PlayerAuth;
+import xyz.nikitacartes.easyauth.utils.PremiumDecision;
+import xyz.nikitacartes.easyauth.utils.ProxyAuth;
+import xyz.nikitacartes.easyauth.utils.TimingWheel;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
@@ -27,16 +30,62 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import static xyz.nikitacartes.easyauth.EasyAuth.*;
-import static xyz.nikitacartes.easyauth.utils.EasyLogger.logInfo;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logDebug;
 
 @Mixin(ServerPlayerEntity.class)
 public class MixinServerPlayerEntity implements PlayerAuth {
 
     private final ServerPlayerEntity player = (ServerPlayerEntity) (Object) this;
 
-    // * 20 for 20 ticks in second
+    // Kick and reminder timers, scheduled while player is not authenticated
     @Unique
-    private int kickTimer = config.main.kickTime * 20;
+    private TimingWheel.Timeout kickTimeout;
+
+    @Unique
+    private TimingWheel.Timeout reminderTimeout;
+
+    /*
+        Auth prompts are sent at most once per AUTH_MESSAGE_INTERVAL ticks,
+        and reminders only when there was no prompt for AUTH_REMINDER_INTERVAL ticks.
+    */
+    @Unique
+    private static final int AUTH_MESSAGE_INTERVAL = 40;
+
+    @Unique
+    private static final int AUTH_REMINDER_INTERVAL = 200;
+
+    @Unique
+    private int authMessageTick = -AUTH_REMINDER_INTERVAL;
+
+    // Prompts are built once, they are translated when being sent
+    @Unique
+    private static final Text LOGIN_MESSAGE = new TranslatableText("text.easyauth.notAuthenticated").append("\n").append(new TranslatableText("text.easyauth.loginRequired"));
+
+    @Unique
+    private static final Text REGISTER_MESSAGE = new TranslatableText("text.easyauth.notAuthenticated").append("\n").append(new TranslatableText("text.easyauth.registerRequired"));
+
+    @Unique
+    private static final boolean isCarpetLoaded = FabricLoader.getInstance().isModLoaded("carpet");
+
+    /*
+        Auth state is resolved on first use (at latest when player joins)
+        and kept for the lifetime of the player entity, as it's checked every tick.
+    */
+    @Unique
+    private String fakeUuid;
+
+    @Unique
+    private Boolean usingMojangAccount;
+
+    @Unique
+    private Boolean skipAuth;
+
+    @Unique
+    private boolean inLimbo = false;
+
+    // Where player would have spawned, used if they have no data yet
+    @Unique
+    private Vec3d limboSpawn;
 
     @Final
     @Shadow
@@ -50,9 +99,8 @@ public class MixinServerPlayerEntity implements PlayerAuth {
      */
     @Override
     public void hidePosition(boolean hide) {
-        PlayerCache cache = playerCacheMap.get(this.getFakeUuid());
-        if(config.experimental.debugMode)
-            logInfo("Teleporting " + player.getName().asString() + (hide ? " to spawn." : " to original position."));
+        PlayerCache cache = this.getPlayerCache();
+        logDebug("Teleporting {} {}", player.getGameProfile().getName(), hide ? "to spawn." : "to original position.");
         if (hide) {
             // Saving position
             cache.lastLocation.dimension = player.getServerWorld();
@@ -62,7 +110,7 @@ public class MixinServerPlayerEntity implements PlayerAuth {
 
             // Teleports player to spawn
             player.teleport(
-                    server.getWorld(RegistryKey.of(Registry.WORLD_KEY, new Identifier(config.worldSpawn.dimension))),
+                    server.getWorld(policy.spawnWorld),
                     config.worldSpawn.x,
                     config.worldSpawn.y,
                     config.worldSpawn.z,
@@ -91,18 +139,33 @@ public class MixinServerPlayerEntity implements PlayerAuth {
      */
     @Override
     public String getFakeUuid() {
+        if(this.fakeUuid != null)
+            return this.fakeUuid;
         // If server is in online mode online-mode UUIDs should be used
         assert server != null;
-        if(server.isOnlineMode() && this.isUsingMojangAccount() && !config.experimental.forcedOfflineUuids)
-            return player.getUuidAsString();
+        if(server.isOnlineMode() && this.isUsingMojangAccount() && !config.experimental.forcedOfflineUuids) {
+            this.fakeUuid = player.getUuidAsString();
+            return this.fakeUuid;
+        }
         /*
             Lower case is used for Player and PlAyEr to get same UUID (for password storing)
             Mimicking Mojang behaviour, where players cannot set their name to
             ExAmple if Example is already taken.
         */
         String playername = player.getGameProfile().getName().toLowerCase();
-        return PlayerEntity.getOfflinePlayerUuid(playername).toString();
+        this.fakeUuid = PlayerEntity.getOfflinePlayerUuid(playername).toString();
+        return this.fakeUuid;
+    }
 
+    /**
+     * Gets the player's cache, once it was created on join.
+     * Not kept in the player, as admin commands can replace or remove the entry while player is online.
+     *
+     * @return player's cache or null if it doesn't exist yet
+     */
+    @Unique
+    private PlayerCache getPlayerCache() {
+        return playerCacheMap.get(this.getFakeUuid());
     }
 
     /**
@@ -113,18 +176,27 @@ public class MixinServerPlayerEntity implements PlayerAuth {
      */
     @Override
     public void setAuthenticated(boolean authenticated) {
-        PlayerCache playerCache = playerCacheMap.get(this.getFakeUuid());
+        PlayerCache playerCache = this.getPlayerCache();
         playerCache.isAuthenticated = authenticated;
 
+        this.cancelAuthTimers();
+        if(!authenticated)
+            this.scheduleAuthTimers();
+
         player.setInvulnerable(!authenticated && config.experimental.playerInvulnerable);
         player.setInvisible(!authenticated && config.experimental.playerInvisible);
 
         // Teleporting player (hiding / restoring position)
-        if(config.main.spawnOnJoin)
+        if(this.inLimbo) {
+            // Authentication might come from hashing thread
+            if(authenticated)
+                server.execute(this::leaveLimbo);
+        }
+        else if(config.main.spawnOnJoin)
             this.hidePosition(!authenticated);
 
         if(authenticated) {
-            kickTimer = config.main.kickTime * 20;
+            authMessageTick = -AUTH_REMINDER_INTERVAL;
             // Updating blocks if needed (if portal rescue action happened)
             if(playerCache.wasInPortal) {
                 World world = player.getEntityWorld();
@@ -146,10 +218,52 @@ public class MixinServerPlayerEntity implements PlayerAuth {
      */
     @Override
     public Text getAuthMessage() {
-        final PlayerCache cache = playerCacheMap.get(((PlayerAuth) player).getFakeUuid());
+        final PlayerCache cache = this.getPlayerCache();
         if(!config.main.enableGlobalPassword && cache.password.isEmpty())
-            return new TranslatableText("text.easyauth.notAuthenticated").append("\n").append(new TranslatableText("text.easyauth.registerRequired"));
-        return new TranslatableText("text.easyauth.notAuthenticated").append("\n").append(new TranslatableText("text.easyauth.loginRequired"));
+            return REGISTER_MESSAGE;
+        return LOGIN_MESSAGE;
+    }
+
+    /**
+     * Sends the {@link #getAuthMessage() auth message},
+     * unless player has already got one in last {@link #AUTH_MESSAGE_INTERVAL} ticks.
+     */
+    @Override
+    public void sendAuthMessage() {
+        int ticks = server.getTicks();
+        if(ticks - this.authMessageTick < AUTH_MESSAGE_INTERVAL)
+            return;
+        this.authMessageTick = ticks;
+        player.sendMessage(this.getAuthMessage(), false);
+    }
+
+    /**
+     * Checks whether player is waiting in limbo.
+     *
+     * @return true if player is in limbo, otherwise false
+     */
+    @Override
+    public boolean isInLimbo() {
+        return this.inLimbo;
+    }
+
+    /**
+     * Holds the connecting player in limbo until they authenticate.
+     */
+    @Override
+    public void holdInLimbo() {
+        this.inLimbo = true;
+        this.limboSpawn = player.getPos();
+        Limbo.enter(player);
+    }
+
+    @Unique
+    private void leaveLimbo() {
+        if(!this.inLimbo || player.isDisconnected())
+            return;
+        this.inLimbo = false;
+        Limbo.leave(player, this.limboSpawn);
+        this.limboSpawn = null;
     }
 
     /**
@@ -159,17 +273,41 @@ public class MixinServerPlayerEntity implements PlayerAuth {
      */
     @Override
     public boolean canSkipAuth() {
-        return (FabricLoader.getInstance().isModLoaded("carpet") && CarpetHelper.isPlayerFake(this.player)) || (isUsingMojangAccount() && config.main.premiumAutologin);
+        if(this.skipAuth == null)
+            this.skipAuth = (isCarpetLoaded && CarpetHelper.isPlayerFake(this.player)) || (isUsingMojangAccount() && config.main.premiumAutologin);
+        return this.skipAuth;
     }
 
     /**
      * Whether the player is using the mojang account.
+     * Decided while logging in, cache is only used for players that weren't let in by the mod.
      *
      * @return true if they are  using mojang account, otherwise false
      */
     @Override
     public boolean isUsingMojangAccount() {
-        return mojangAccountNamesCache.contains(player.getGameProfile().getName().toLowerCase());
+        if(this.usingMojangAccount == null) {
+            String playername = player.getGameProfile().getName();
+            Boolean decision = PremiumDecision.get(playername);
+            this.usingMojangAccount = decision != null ? decision : mojangAccountNamesCache.isPremium(playername.toLowerCase());
+        }
+        return this.usingMojangAccount;
+    }
+
+    // Login decision is only available while entity is being created
+    @Inject(method = "<init>", at = @At("TAIL"))
+    private void resolveMojangAccount(CallbackInfo ci) {
+        this.isUsingMojangAccount();
+    }
+
+    // Respawned player is a new entity
+    @Inject(method = "copyFrom(Lnet/minecraft/server/network/ServerPlayerEntity;Z)V", at = @At("HEAD"))
+    private void copyMojangAccount(ServerPlayerEntity oldPlayer, boolean alive, CallbackInfo ci) {
+        this.usingMojangAccount = ((PlayerAuth) oldPlayer).isUsingMojangAccount();
+        this.fakeUuid = null;
+        this.skipAuth = null;
+        // Player that died in limbo still has no data loaded
+        this.inLimbo = ((PlayerAuth) oldPlayer).isInLimbo();
     }
 
     /**
@@ -179,31 +317,75 @@ public class MixinServerPlayerEntity implements PlayerAuth {
      */
     @Override
     public boolean isAuthenticated() {
-        String uuid = ((PlayerAuth) player).getFakeUuid();
-        return  this.canSkipAuth() || (playerCacheMap.containsKey(uuid) && playerCacheMap.get(uuid).isAuthenticated);
+        if(this.canSkipAuth())
+            return true;
+        PlayerCache cache = this.getPlayerCache();
+        return cache != null && cache.isAuthenticated;
+    }
+
+    /**
+     * Schedules kicking the player after {@link xyz.nikitacartes.easyauth.storage.AuthConfig.MainConfig#kickTime}
+     * and reminding them to authenticate.
+     */
+    @Unique
+    private void scheduleAuthTimers() {
+        // * 20 for 20 ticks in second
+        this.kickTimeout = TIMERS.schedule(config.main.kickTime * 20, () -> {
+            // Player might have logged in while timer was already running
+            if(!this.isAuthenticated() && player.networkHandler.getConnection().isOpen())
+                player.networkHandler.disconnect(new TranslatableText("text.easyauth.timeExpired"));
+        });
+        this.scheduleReminder(ProxyAuth.isChallenged(this.player) ? ProxyAuth.PROMPT_DELAY : 1);
+    }
+
+    @Unique
+    private void scheduleReminder(int delay) {
+        this.reminderTimeout = TIMERS.schedule(delay, () -> {
+            if(this.isAuthenticated() || player.isDisconnected())
+                return;
+            // Sending authentication prompt if player didn't get one in last 10 seconds
+            int sinceLastMessage = server.getTicks() - this.authMessageTick;
+            if(sinceLastMessage >= AUTH_REMINDER_INTERVAL) {
+                this.sendAuthMessage();
+                sinceLastMessage = 0;
+            }
+            this.scheduleReminder(AUTH_REMINDER_INTERVAL - sinceLastMessage);
+        });
+    }
+
+    @Unique
+    private void cancelAuthTimers() {
+        if(this.kickTimeout != null) {
+            this.kickTimeout.cancel();
+            this.kickTimeout = null;
+        }
+        if(this.reminderTimeout != null) {
+            this.reminderTimeout.cancel();
+            this.reminderTimeout = null;
+        }
+    }
+
+    @Inject(method = "onDisconnect()V", at = @At("HEAD"))
+    private void onDisconnect(CallbackInfo ci) {
+        this.cancelAuthTimers();
     }
 
     @Inject(method = "playerTick()V", at = @At("HEAD"), cancellable = true)
     private void playerTick(CallbackInfo ci) {
+        long start = HookProfiler.start();
         if(!this.isAuthenticated()) {
-            // Checking player timer
-            if(kickTimer <= 0 && player.networkHandler.getConnection().isOpen()) {
-                player.networkHandler.disconnect(new TranslatableText("text.easyauth.timeExpired"));
-            }
-            else {
-                // Sending authentication prompt every 10 seconds
-                if(kickTimer % 200 == 0)
-                    player.sendMessage(this.getAuthMessage(), false);
-                --kickTimer;
-            }
+            // Kick and reminder are handled by timers
             ci.cancel();
         }
+        HookProfiler.end(HookProfiler.Hook.PLAYER_TICK, start);
     }
 
     // Player item dropping
     @Inject(method = "dropSelectedItem(Z)Z", at = @At("HEAD"), cancellable = true)
     private void dropSelectedItem(boolean dropEntireStack, CallbackInfoReturnable<Boolean> cir) {
+        long start = HookProfiler.start();
         ActionResult result = AuthEventHandler.onDropItem(player);
+        HookProfiler.end(HookProfiler.Hook.DROP_ITEM, start);
 
         if (result == ActionResult.FAIL) {
             cir.setReturnValue(false);
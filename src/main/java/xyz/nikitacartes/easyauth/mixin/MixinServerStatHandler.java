@@ -0,0 +1,26 @@
+package xyz.nikitacartes.easyauth.mixin;
+
+import net.minecraft.stat.ServerStatHandler;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Redirect;
+import xyz.nikitacartes.easyauth.utils.PlayerDataPrefetch;
+
+import java.io.File;
+import java.io.IOException;
+
+@Mixin(ServerStatHandler.class)
+public class MixinServerStatHandler {
+
+    // Uses stats that were read in the background while player was logging in
+    @Redirect(
+            method = "<init>(Lnet/minecraft/server/MinecraftServer;Ljava/io/File;)V",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lorg/apache/commons/io/FileUtils;readFileToString(Ljava/io/File;)Ljava/lang/String;"
+            )
+    )
+    private String readPrefetchedStats(File file) throws IOException {
+        return PlayerDataPrefetch.readString(file);
+    }
+}
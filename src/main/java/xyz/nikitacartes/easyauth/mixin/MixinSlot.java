@@ -6,6 +6,7 @@ import net.minecraft.screen.slot.Slot;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.ActionResult;
 import xyz.nikitacartes.easyauth.event.AuthEventHandler;
+import xyz.nikitacartes.easyauth.utils.HookProfiler;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
@@ -16,6 +17,7 @@ public abstract class MixinSlot {
     // Denying item moving etc.
     @Inject(method = "canTakeItems(Lnet/minecraft/entity/player/PlayerEntity;)Z", at = @At(value = "HEAD"), cancellable = true)
     private void canTakeItems(PlayerEntity playerEntity, CallbackInfoReturnable<Boolean> cir) {
+        long start = HookProfiler.start();
         ServerPlayerEntity player = (ServerPlayerEntity) playerEntity;
         ActionResult result = AuthEventHandler.onTakeItem(player);
 
@@ -30,5 +32,6 @@ public abstract class MixinSlot {
             );
             cir.setReturnValue(false);
         }
+        HookProfiler.end(HookProfiler.Hook.SLOT_TAKE_ITEMS, start);
     }
 }
@@ -2,7 +2,6 @@ package xyz.nikitacartes.easyauth.mixin;
 
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.nbt.NbtCompound;
-import net.minecraft.nbt.NbtIo;
 import net.minecraft.world.WorldSaveHandler;
 import org.apache.logging.log4j.Logger;
 import org.spongepowered.asm.mixin.Final;
@@ -12,16 +11,19 @@ import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.ModifyVariable;
+import org.spongepowered.asm.mixin.injection.Redirect;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 import org.spongepowered.asm.mixin.injection.callback.LocalCapture;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 
+import xyz.nikitacartes.easyauth.utils.PlayerAuth;
+import xyz.nikitacartes.easyauth.utils.PlayerDataPrefetch;
+
 import static xyz.nikitacartes.easyauth.EasyAuth.config;
-import static xyz.nikitacartes.easyauth.EasyAuth.mojangAccountNamesCache;
-import static xyz.nikitacartes.easyauth.utils.EasyLogger.logInfo;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.isDebugEnabled;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logDebug;
 
 @Mixin(WorldSaveHandler.class)
 public class MixinWorldSaveHandler {
@@ -58,6 +60,24 @@ public class MixinWorldSaveHandler {
         this.fileExists = file.exists();
     }
 
+    /**
+     * Uses player data that was read in the background while player was logging in.
+     *
+     * @param file player data file
+     * @return player data
+     * @throws IOException if file couldn't be read
+     */
+    @Redirect(
+            method = "loadPlayerData(Lnet/minecraft/entity/player/PlayerEntity;)Lnet/minecraft/nbt/NbtCompound;",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lnet/minecraft/nbt/NbtIo;readCompressed(Ljava/io/File;)Lnet/minecraft/nbt/NbtCompound;"
+            )
+    )
+    private NbtCompound readPrefetchedPlayerData(File file) throws IOException {
+        return PlayerDataPrefetch.readNbt(file);
+    }
+
     /**
      * Loads offline-uuid player data to compoundTag in order to migrate from offline to online.
      *
@@ -75,25 +95,23 @@ public class MixinWorldSaveHandler {
     private NbtCompound migratePlayerData(NbtCompound compoundTag, PlayerEntity player) {
         // Checking for offline player data only if online doesn't exist yet
         String playername = player.getGameProfile().getName().toLowerCase();
-        if(config.main.premiumAutologin && mojangAccountNamesCache.contains(playername) && !this.fileExists) {
-            if(config.experimental.debugMode)
-                    logInfo("Migrating data for " + playername);
-                File file = new File(this.playerDataDir, PlayerEntity.getOfflinePlayerUuid(player.getGameProfile().getName()) + ".dat");
+        boolean premium = ((PlayerAuth) player).isUsingMojangAccount();
+        if(config.main.premiumAutologin && premium && !this.fileExists) {
+            logDebug("Migrating data for {}", playername);
+            File file = new File(this.playerDataDir, PlayerEntity.getOfflinePlayerUuid(player.getGameProfile().getName()) + ".dat");
             if (file.exists() && file.isFile())
                 try {
-                    compoundTag = NbtIo.readCompressed(new FileInputStream(file));
+                    compoundTag = PlayerDataPrefetch.readNbt(file);
                 }
                 catch (IOException e) {
                     LOGGER.warn("Failed to load player data for {}", playername);
                 }
         }
-        else if(config.experimental.debugMode)
-            logInfo("Not migrating " +
-                    playername +
-                    ", as premium status is: " +
-                    mojangAccountNamesCache.contains(playername) +
-                    " and data file is " + (this.fileExists ? "" : "not") +
-                    " present."
+        else if(isDebugEnabled())
+            logDebug("Not migrating {}, as premium status is: {} and data file is {}present.",
+                    playername,
+                    premium,
+                    this.fileExists ? "" : "not "
             );
         return compoundTag;
     }
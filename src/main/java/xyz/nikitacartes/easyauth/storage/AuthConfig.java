@@ -182,6 +182,41 @@ public class AuthConfig {
         public String playerAlreadyOnline = "\u00A7cPlayer %s is already online!";
         public String worldSpawnSet = "\u00A7aSpawn for logging in was set successfully.";
         public String userNotRegistered = "\u00A7cThis player is not registered!";
+        public String migrationStarted = "\u00A76Started migrating data of premium players.";
+        public String migrationRunning = "\u00A7cData migration is already running!";
+        public String migrationFinished = "\u00A7aData migration finished, migrated %d players, %d couldn't be checked with Mojang API.";
+        public String profilerStarted = "\u00A76Started profiling EasyAuth hooks, use /auth profile to see results.";
+        public String profilerStopped = "\u00A76Stopped profiling EasyAuth hooks.";
+        public String exportStarted = "\u00A76Started exporting accounts, progress is shown in server log.";
+        public String exportFinished = "\u00A7aExported %d accounts (%d corrupted skipped) in %s s.";
+        public String importStarted = "\u00A76Started importing accounts, progress is shown in server log.";
+        public String importFinished = "\u00A7aImported %d accounts (%d hashed, %d skipped, %d invalid, %d failed) in %s s.";
+        public String transferRunning = "\u00A7cExport or import of accounts is already running!";
+        public String transferFailed = "\u00A7cExport or import of accounts failed, see server log.";
+        public String statsPlayers = "Unauthenticated players: %d, hashing queue: %d";
+        public String statsLogin = "Login: %d, p50 %s ms, p99 %s ms, max %s ms, failed %d";
+        public String statsRegister = "Register: %d, p50 %s ms, p99 %s ms, max %s ms";
+        public String statsHashVerify = "Hash verify: %d, p50 %s ms, p99 %s ms, max %s ms";
+        public String statsHashCreate = "Hash create: %d, p50 %s ms, p99 %s ms, max %s ms";
+        public String statsStorageRead = "%5$s read: %1$d, p50 %2$s ms, p99 %3$s ms, max %4$s ms";
+        public String statsStorageWrite = "%5$s write: %1$d, p50 %2$s ms, p99 %3$s ms, max %4$s ms";
+        public String statsStorageBatchWrite = "%5$s batch write: %1$d, p50 %2$s ms, p99 %3$s ms, max %4$s ms";
+        public String statsMojangLookup = "Mojang lookup: %d, p50 %s ms, p99 %s ms, max %s ms, failed %d";
+        public String statsPlayerCache = "Player cache: %d entries, %d hits, %d misses";
+        public String statsMojangCache = "Mojang account cache: %d hits, %d misses, %d evictions";
+        public String statsDropped = "Dropped log messages: %d, audit events: %d";
+        public String profileRunning = "Profiled %d ticks (%s s), still running";
+        public String profileFinished = "Profiled %d ticks (%s s)";
+        public String profileHook = "%s: %d calls, %s ms/tick, avg %d ns, max %s us";
+        public String profileHookAllocated = "%s: %d calls, %s ms/tick, avg %d ns, max %s us, %d B/call";
+        public String profileTotal = "Total: %s ms/tick";
+        public String auditHeader = "Audit of %s in last %d hours: %d events";
+        public String auditEvent = "%s %s %s %s";
+        public String auditEventDetail = "%s %s %s %s: %s";
+        public String accountsFound = "Found %d accounts (%d checked):";
+        public String accountRegistered = "%s: registered, last IP %s, session until %s";
+        public String accountNotRegistered = "%s: not registered, last IP %s, session until %s";
+        public String accountsNextPage = "[Next page: %s]";
     }
     public static class ExperimentalConfig {
         /**
@@ -196,6 +231,12 @@ public class AuthConfig {
          * If player should be invisible to mobs before authentication.
          */
         public boolean playerInvisible = true;
+        /**
+         * Whether to hold players in an empty limbo dimension until they authenticate.
+         * Their data and the chunks around them are only loaded after logging in,
+         * so players that never authenticate cost almost nothing.
+         */
+        public boolean useLimbo = false;
         /**
          * Allows chat (but not commands, except for /login and /register).
          */
@@ -237,6 +278,44 @@ public class AuthConfig {
          * @see <a href="https://github.com/NikitaCartes/EasyAuth/wiki/GLIBC-problems" target="_blank">wiki</a>
          */
         public boolean useBCryptLibrary = false;
+        /**
+         * Algorithm used for hashing new passwords: "argon2", "bcrypt", "scrypt" or "pbkdf2".
+         * Existing passwords are still verified with the algorithm they were hashed with,
+         * and rehashed on next successful login.
+         * Ignored if useBCryptLibrary is enabled.
+         */
+        public String passwordHasher = "argon2";
+        /**
+         * Whether to use pure Java Argon2 implementation instead of the native one.
+         * It reuses hashing memory between passwords instead of allocating it every time,
+         * which keeps memory usage flat during login waves.
+         */
+        public boolean useJavaArgon2 = false;
+        /**
+         * Argon2 iterations (time cost) used for new hashes.
+         * Passwords hashed with other parameters are rehashed on next successful login.
+         */
+        public int argon2Iterations = 10;
+        /**
+         * Argon2 memory cost in KiB used for new hashes.
+         */
+        public int argon2Memory = 65536;
+        /**
+         * Argon2 parallelism used for new hashes.
+         */
+        public int argon2Parallelism = 1;
+        /**
+         * BCrypt cost (log2 rounds) used for new hashes.
+         */
+        public int bCryptCost = 12;
+        /**
+         * Scrypt cost as log2(N) used for new hashes. Memory used per hash is 2^scryptCost KiB.
+         */
+        public int scryptCost = 15;
+        /**
+         * PBKDF2-HMAC-SHA256 iterations used for new hashes.
+         */
+        public int pbkdf2Iterations = 310000;
         /**
          * Whether to modify player uuids to offline style.
          * Note: this should be used only if you had your server
@@ -250,6 +329,69 @@ public class AuthConfig {
          */
         public boolean forcedOfflineUuids = false;
         public boolean useSimpleAuthDatabase = false;
+        /**
+         * Whether to run blocking operations (database, Mojang API) on virtual threads.
+         * Needs Java 21 or newer, otherwise a bounded thread pool is used.
+         */
+        public boolean useVirtualThreads = true;
+        /**
+         * Base URL of Mojang API, used for checking whether players have Mojang accounts.
+         * Can be changed to point to a mirror or a local stub for testing.
+         */
+        public String mojangApiUrl = "https://api.mojang.com";
+        /**
+         * Maximum number of Mojang API requests running at once.
+         * Others wait in a queue, while their players' logins are paused.
+         */
+        public int mojangApiMaxRequests = 8;
+        /**
+         * How to treat players whose status couldn't be checked, because Mojang API is down.
+         * If true, they have to log in with a Mojang account (as in online mode),
+         * otherwise they are let in as offline players.
+         */
+        public boolean premiumOnMojangApiFailure = true;
+        /**
+         * How long to remember that a name belongs to a Mojang account, in seconds.
+         */
+        public long premiumCachePositiveTtl = 2592000;
+        /**
+         * How long to remember that a name doesn't belong to a Mojang account, in seconds.
+         * Set to 0 to check such names on every join.
+         */
+        public long premiumCacheNegativeTtl = 86400;
+        /**
+         * Maximum number of names kept in Mojang account cache.
+         */
+        public int premiumCacheSize = 100000;
+        /**
+         * File to periodically write metrics to, in Prometheus text format.
+         * Relative to server directory, empty to disable.
+         */
+        public String metricsFile = "";
+        /**
+         * Port of local (127.0.0.1 only) endpoint serving metrics in Prometheus text format at /metrics.
+         * Set to 0 to disable.
+         */
+        public int metricsPort = 0;
+        /**
+         * How often to update metrics file and player gauges, in seconds.
+         */
+        public int metricsInterval = 15;
+        /**
+         * Whether to write logins, failed attempts, registrations, password changes,
+         * admin actions and premium decisions to mods/EasyAuth/audit.
+         */
+        public boolean auditLog = true;
+        /**
+         * How many days to keep audit log files for, 0 to keep them forever.
+         */
+        public int auditRetentionDays = 90;
+        /**
+         * Secret shared with EasyAuth Velocity plugin (found in its plugins/easyauth/secret.txt),
+         * which lets registered players who have authenticated on one server of the network skip authentication on others.
+         * Must be at least 32 bytes long. Leave empty to disable.
+         */
+        public String proxySecret = "";
     }
 
     public MainConfig main = new MainConfig();
@@ -0,0 +1,145 @@
+package xyz.nikitacartes.easyauth.storage;
+
+import net.minecraft.util.Identifier;
+import net.minecraft.util.InvalidIdentifierException;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.World;
+import xyz.nikitacartes.easyauth.utils.ProxyMessage;
+import xyz.nikitacartes.easyauth.utils.hashing.Hasher;
+import xyz.nikitacartes.easyauth.utils.hashing.HasherRegistry;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
+
+/**
+ * Immutable snapshot of {@link AuthConfig}, compiled for use in hooks.
+ * Holds precompiled patterns and resolved values, so checks don't parse or allocate anything.
+ * A new one is created each time the config changes, see {@link xyz.nikitacartes.easyauth.EasyAuth#policy}.
+ */
+public final class AuthPolicy {
+    /**
+     * Actions that can be allowed for non-authenticated players.
+     */
+    public static final int CHAT = 1;
+    public static final int MOVEMENT = 1 << 1;
+    public static final int BLOCK_USE = 1 << 2;
+    public static final int BLOCK_PUNCH = 1 << 3;
+    public static final int ITEM_DROP = 1 << 4;
+    public static final int ITEM_MOVING = 1 << 5;
+    public static final int ITEM_USE = 1 << 6;
+    public static final int ENTITY_PUNCH = 1 << 7;
+    public static final int ENTITY_INTERACT = 1 << 8;
+
+    /**
+     * Lower case names that can belong to a Mojang account.
+     */
+    public static final Pattern PREMIUM_NAME = Pattern.compile("^[a-z0-9_]{3,16}$");
+
+    private static final String DEFAULT_USERNAME_REGEX = new AuthConfig.MainConfig().usernameRegex;
+
+    /**
+     * Compiled {@link AuthConfig.MainConfig#usernameRegex}.
+     */
+    public final Pattern usernamePattern;
+    /**
+     * Names from {@link AuthConfig.MainConfig#forcedOfflinePlayers}.
+     */
+    public final Set<String> forcedOfflinePlayers;
+    /**
+     * World of {@link AuthConfig.MainConfig.WorldSpawn}, overworld if not set.
+     */
+    public final RegistryKey<World> spawnWorld;
+    /**
+     * Hasher for new passwords, see {@link HasherRegistry#resolve(AuthConfig)}.
+     */
+    public final Hasher hasher;
+    /**
+     * Key from {@link AuthConfig.ExperimentalConfig#proxySecret}, null if proxy authentication is disabled.
+     */
+    public final byte[] proxyKey;
+    private final int allowedActions;
+
+    private AuthPolicy(Pattern usernamePattern, Set<String> forcedOfflinePlayers, RegistryKey<World> spawnWorld, Hasher hasher, byte[] proxyKey, int allowedActions) {
+        this.usernamePattern = usernamePattern;
+        this.forcedOfflinePlayers = forcedOfflinePlayers;
+        this.spawnWorld = spawnWorld;
+        this.hasher = hasher;
+        this.proxyKey = proxyKey;
+        this.allowedActions = allowedActions;
+    }
+
+    /**
+     * Checks whether non-authenticated players are allowed to do the action.
+     *
+     * @param action one of action constants, e.g. {@link #CHAT}
+     * @return true if action is allowed
+     */
+    public boolean isAllowed(int action) {
+        return (this.allowedActions & action) != 0;
+    }
+
+    /**
+     * Compiles the config into policy.
+     * Invalid values are reported and replaced with defaults.
+     *
+     * @param config config to compile
+     * @return compiled policy
+     */
+    public static AuthPolicy compile(AuthConfig config) {
+        Pattern usernamePattern;
+        try {
+            usernamePattern = Pattern.compile(config.main.usernameRegex);
+        } catch (PatternSyntaxException | NullPointerException e) {
+            logError("Invalid usernameRegex in config, using default one: " + e.getMessage());
+            usernamePattern = Pattern.compile(DEFAULT_USERNAME_REGEX);
+        }
+
+        Set<String> forcedOfflinePlayers = config.main.forcedOfflinePlayers == null ?
+                Collections.emptySet() :
+                Collections.unmodifiableSet(new HashSet<>(config.main.forcedOfflinePlayers));
+
+        RegistryKey<World> spawnWorld = World.OVERWORLD;
+        if(config.worldSpawn.dimension != null) {
+            try {
+                spawnWorld = RegistryKey.of(Registry.WORLD_KEY, new Identifier(config.worldSpawn.dimension));
+            } catch (InvalidIdentifierException e) {
+                logError("Invalid spawn dimension in config, using overworld: " + e.getMessage());
+            }
+        }
+
+        byte[] proxyKey = null;
+        if(config.experimental.proxySecret != null && !config.experimental.proxySecret.isEmpty()) {
+            proxyKey = ProxyMessage.getKey(config.experimental.proxySecret);
+            if(proxyKey == null)
+                logError("proxySecret in config must be at least " + ProxyMessage.MIN_SECRET_LENGTH + " bytes long, proxy authentication is disabled.");
+        }
+
+        int allowedActions = 0;
+        if(config.experimental.allowChat)
+            allowedActions |= CHAT;
+        if(config.experimental.allowMovement)
+            allowedActions |= MOVEMENT;
+        if(config.experimental.allowBlockUse)
+            allowedActions |= BLOCK_USE;
+        if(config.experimental.allowBlockPunch)
+            allowedActions |= BLOCK_PUNCH;
+        if(config.experimental.allowItemDrop)
+            allowedActions |= ITEM_DROP;
+        if(config.experimental.allowItemMoving)
+            allowedActions |= ITEM_MOVING;
+        if(config.experimental.allowItemUse)
+            allowedActions |= ITEM_USE;
+        if(config.experimental.allowEntityPunch)
+            allowedActions |= ENTITY_PUNCH;
+        if(config.main.allowEntityInteract)
+            allowedActions |= ENTITY_INTERACT;
+
+        return new AuthPolicy(usernamePattern, forcedOfflinePlayers, spawnWorld, HasherRegistry.resolve(config), proxyKey, allowedActions);
+    }
+}
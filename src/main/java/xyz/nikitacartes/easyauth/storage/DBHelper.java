@@ -2,8 +2,12 @@ package xyz.nikitacartes.easyauth.storage;
 
 import xyz.nikitacartes.easyauth.storage.database.LevelDB;
 import xyz.nikitacartes.easyauth.storage.database.MongoDB;
+import xyz.nikitacartes.easyauth.utils.AuthMetrics;
 
 import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
 
 import static xyz.nikitacartes.easyauth.EasyAuth.config;
 import static xyz.nikitacartes.easyauth.utils.EasyLogger.logInfo;
@@ -46,10 +50,13 @@ public class DBHelper {
      * @return true if operation was successful, otherwise false
      */
     public boolean registerUser(String uuid, String data) {
+        long start = System.nanoTime();
         if(config.main.useMongoDB)
             //return MongoDB.registerUser(uuid, data);
             System.out.println("Not implemented yet.");
-        return LevelDB.registerUser(uuid, data);
+        boolean registered = LevelDB.registerUser(uuid, data);
+        writeMetric().recordSince(start);
+        return registered;
     }
 
     /**
@@ -59,7 +66,10 @@ public class DBHelper {
      * @return true if registered, otherwise false
      */
     public boolean isUserRegistered(String uuid) {
-        return config.main.useMongoDB ? MongoDB.isUserRegistered(uuid) : LevelDB.isUserRegistered(uuid);
+        long start = System.nanoTime();
+        boolean registered = config.main.useMongoDB ? MongoDB.isUserRegistered(uuid) : LevelDB.isUserRegistered(uuid);
+        readMetric().recordSince(start);
+        return registered;
     }
 
     /**
@@ -68,10 +78,12 @@ public class DBHelper {
      * @param uuid uuid of player to delete data for
      */
     public void deleteUserData(String uuid) {
+        long start = System.nanoTime();
         if(config.main.useMongoDB)
             MongoDB.deleteUserData(uuid);
         else
             LevelDB.deleteUserData(uuid);
+        writeMetric().recordSince(start);
     }
 
     /**
@@ -81,11 +93,13 @@ public class DBHelper {
      * @param data data to put inside database
      */
     public void updateUserData(String uuid, String data) {
+        long start = System.nanoTime();
         if(config.main.useMongoDB)
             //MongoDB.updateUserData(uuid, data);
             System.out.println("Not implemented yet.");
         else
             LevelDB.updateUserData(uuid, data);
+        writeMetric().recordSince(start);
     }
 
     /**
@@ -95,14 +109,73 @@ public class DBHelper {
      * @return data as string if player has it, otherwise empty string.
      */
     public String getUserData(String uuid){
-        return config.main.useMongoDB ? MongoDB.getUserData(uuid) : LevelDB.getUserData(uuid);
+        long start = System.nanoTime();
+        String data = config.main.useMongoDB ? MongoDB.getUserData(uuid) : LevelDB.getUserData(uuid);
+        readMetric().recordSince(start);
+        return data;
     }
 
     public void saveAll(HashMap<String, PlayerCache> playerCacheMap) {
+        long start = System.nanoTime();
         // Saving player data.
         if(config.main.useMongoDB)
             MongoDB.saveFromCache(playerCacheMap);
         else
             LevelDB.saveFromCache(playerCacheMap);
+        batchWriteMetric().recordSince(start);
+    }
+
+    /**
+     * Iterates over all players' data, without loading it all into memory.
+     *
+     * @param consumer consumer of uuid and data of each player
+     */
+    public void forEachUser(BiConsumer<String, String> consumer) {
+        if(config.main.useMongoDB)
+            MongoDB.forEachUser(consumer);
+        else
+            LevelDB.forEachUser(consumer);
+    }
+
+    /**
+     * Iterates over players' data in order of uuids, starting at the given uuid.
+     * Used for paging, each page continues after the last uuid of the previous one.
+     * Not recorded in read metrics, as a scan isn't a single read.
+     *
+     * @param start uuid to start at, empty to start from the beginning
+     * @param inclusive whether to include the start uuid itself, false when continuing after a page
+     * @param consumer consumer of uuid and data of each player, returns false to stop iterating
+     */
+    public void forEachUserFrom(String start, boolean inclusive, BiPredicate<String, String> consumer) {
+        if(config.main.useMongoDB)
+            MongoDB.forEachUserFrom(start, inclusive, consumer);
+        else
+            LevelDB.forEachUserFrom(start, inclusive, consumer);
+    }
+
+    /**
+     * Writes data of multiple players in one batch, replacing existing data.
+     *
+     * @param users map of uuids to data to put inside database
+     */
+    public void writeUsers(Map<String, String> users) {
+        long start = System.nanoTime();
+        if(config.main.useMongoDB)
+            MongoDB.writeUsers(users);
+        else
+            LevelDB.writeUsers(users);
+        batchWriteMetric().recordSince(start);
+    }
+
+    private static AuthMetrics.Histogram readMetric() {
+        return config.main.useMongoDB ? AuthMetrics.MONGODB_READ : AuthMetrics.LEVELDB_READ;
+    }
+
+    private static AuthMetrics.Histogram writeMetric() {
+        return config.main.useMongoDB ? AuthMetrics.MONGODB_WRITE : AuthMetrics.LEVELDB_WRITE;
+    }
+
+    private static AuthMetrics.Histogram batchWriteMetric() {
+        return config.main.useMongoDB ? AuthMetrics.MONGODB_BATCH_WRITE : AuthMetrics.LEVELDB_BATCH_WRITE;
     }
 }
\ No newline at end of file
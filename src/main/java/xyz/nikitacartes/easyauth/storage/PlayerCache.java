@@ -13,8 +13,8 @@ import xyz.nikitacartes.easyauth.event.AuthEventHandler;
 import java.util.Objects;
 
 import static xyz.nikitacartes.easyauth.EasyAuth.DB;
-import static xyz.nikitacartes.easyauth.EasyAuth.config;
-import static xyz.nikitacartes.easyauth.utils.EasyLogger.logInfo;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.isDebugEnabled;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logDebug;
 
 /**
  * Class used for storing the non-authenticated player's cache
@@ -73,24 +73,16 @@ public class PlayerCache {
             .create();
 
     /**
-     * Creates an empty cache for player (when player doesn't exist in DB).
+     * Creates cache for player from DB data, or an empty one (when player doesn't exist in DB).
      *
      * @param player player to create cache for
+     * @param fakeUuid player's uuid used in DB
      */
-
-
     public static PlayerCache fromJson(ServerPlayerEntity player, String fakeUuid) {
-        if(config.experimental.debugMode)
-            logInfo("Creating cache for " + Objects.requireNonNull(player).getGameProfile().getName());
+        if(isDebugEnabled())
+            logDebug("Creating cache for {}", Objects.requireNonNull(player).getGameProfile().getName());
 
-        String json = DB.getUserData(fakeUuid);
-        PlayerCache playerCache;
-        if(!json.isEmpty()) {
-            // Parsing data from DB
-            playerCache = gson.fromJson(json, PlayerCache.class);
-        }
-        else
-            playerCache = new PlayerCache();
+        PlayerCache playerCache = fromJson(DB.getUserData(fakeUuid));
         if(player != null) {
             // Setting position cache
             playerCache.lastLocation.dimension = player.getServerWorld();
@@ -104,6 +96,18 @@ public class PlayerCache {
         return playerCache;
     }
 
+    /**
+     * Parses cache from data stored in DB.
+     *
+     * @param json player's data, as returned by {@link #toJson()}
+     * @return parsed cache, or an empty one if data is empty
+     */
+    public static PlayerCache fromJson(String json) {
+        if(json.isEmpty())
+            return new PlayerCache();
+        return gson.fromJson(json, PlayerCache.class);
+    }
+
     public String toJson() {
         return gson.toJson(this);
     }
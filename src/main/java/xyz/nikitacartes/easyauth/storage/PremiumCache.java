@@ -0,0 +1,195 @@
+package xyz.nikitacartes.easyauth.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import xyz.nikitacartes.easyauth.utils.AuthMetrics;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static xyz.nikitacartes.easyauth.EasyAuth.THREADPOOL;
+import static xyz.nikitacartes.easyauth.EasyAuth.config;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logDebug;
+
+/**
+ * Cache of Mojang account statuses of player names.
+ * <p>
+ * Both results (has / doesn't have an account) are cached,
+ * each with its own time to live, and the cache is kept on disk between restarts.
+ * It only saves lookups, players that join get the status decided for them with
+ * {@link xyz.nikitacartes.easyauth.utils.PremiumDecision}, so it works with any TTL.
+ * Safe to use from multiple threads.
+ */
+public class PremiumCache {
+    private static final Gson gson = new Gson();
+    private static final Type TYPE = new TypeToken<HashMap<String, Entry>>(){}.getType();
+
+    private static class Entry {
+        private boolean premium;
+        private long expires;
+
+        private Entry(boolean premium, long expires) {
+            this.premium = premium;
+            this.expires = expires;
+        }
+    }
+
+    // Changed cache is saved every 5 minutes, so lookups aren't lost if server crashes
+    private static final int SAVE_INTERVAL_TICKS = 5 * 60 * 20;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    // File the cache was loaded from, only used on server thread
+    private File file;
+    private int ticks = 0;
+
+    /**
+     * Gets the cached account status.
+     *
+     * @param playername lower case name of the player
+     * @return true if player has a Mojang account, false if not, null if status isn't known or has expired
+     */
+    public Boolean get(String playername) {
+        Entry entry = this.entries.get(playername);
+        if(entry == null) {
+            AuthMetrics.PREMIUM_CACHE_MISSES.increment();
+            return null;
+        }
+        if(entry.expires < System.currentTimeMillis()) {
+            this.entries.remove(playername, entry);
+            AuthMetrics.PREMIUM_CACHE_MISSES.increment();
+            return null;
+        }
+        AuthMetrics.PREMIUM_CACHE_HITS.increment();
+        return entry.premium;
+    }
+
+    /**
+     * Checks whether the name is known to belong to a Mojang account.
+     *
+     * @param playername lower case name of the player
+     * @return true if player has a Mojang account
+     */
+    public boolean isPremium(String playername) {
+        return Boolean.TRUE.equals(this.get(playername));
+    }
+
+    /**
+     * Caches the account status.
+     *
+     * @param playername lower case name of the player
+     * @param premium whether player has a Mojang account
+     */
+    public void put(String playername, boolean premium) {
+        long ttl = premium ? config.experimental.premiumCachePositiveTtl : config.experimental.premiumCacheNegativeTtl;
+        if(ttl <= 0)
+            return;
+        this.entries.put(playername, new Entry(premium, System.currentTimeMillis() + ttl * 1000L));
+        this.dirty.set(true);
+        if(this.entries.size() > config.experimental.premiumCacheSize)
+            this.evict();
+    }
+
+    /**
+     * Removes expired entries and, if that's not enough, tenth of the entries that expire soonest.
+     */
+    private synchronized void evict() {
+        int maxSize = config.experimental.premiumCacheSize;
+        if(this.entries.size() <= maxSize)
+            return;
+        int size = this.entries.size();
+        long now = System.currentTimeMillis();
+        this.entries.values().removeIf(entry -> entry.expires < now);
+        if(this.entries.size() <= maxSize) {
+            AuthMetrics.PREMIUM_CACHE_EVICTIONS.add(size - this.entries.size());
+            return;
+        }
+
+        List<Map.Entry<String, Entry>> oldest = new ArrayList<>(this.entries.entrySet());
+        oldest.sort(Comparator.comparingLong(entry -> entry.getValue().expires));
+        int toRemove = this.entries.size() - maxSize + maxSize / 10;
+        for (int i = 0; i < toRemove && i < oldest.size(); i++)
+            this.entries.remove(oldest.get(i).getKey(), oldest.get(i).getValue());
+        AuthMetrics.PREMIUM_CACHE_EVICTIONS.add(size - this.entries.size());
+    }
+
+    /**
+     * Loads cached statuses from file, skipping the expired ones.
+     *
+     * @param file file to load cache from
+     */
+    public void load(File file) {
+        this.file = file;
+        if(!file.exists())
+            return;
+        try (BufferedReader fileReader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)
+        )) {
+            Map<String, Entry> loaded = gson.fromJson(fileReader, TYPE);
+            if(loaded == null)
+                return;
+            long now = System.currentTimeMillis();
+            loaded.forEach((playername, entry) -> {
+                if(entry != null && entry.expires >= now)
+                    this.entries.put(playername, entry);
+            });
+            logDebug("Loaded {} cached Mojang account statuses.", this.entries.size());
+        } catch (IOException | JsonParseException e) {
+            logError("Problem occurred when loading Mojang account cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Saves the cache to the file it was loaded from, if it changed since last save.
+     * Called every tick, cache is only written every {@link #SAVE_INTERVAL_TICKS} ticks, in background.
+     */
+    public void tick() {
+        if(++this.ticks < SAVE_INTERVAL_TICKS)
+            return;
+        this.ticks = 0;
+        if(this.file == null || !this.dirty.getAndSet(false))
+            return;
+        File file = this.file;
+        Map<String, Entry> snapshot = new HashMap<>(this.entries);
+        THREADPOOL.execute(() -> this.write(file, snapshot));
+    }
+
+    /**
+     * Saves cached statuses to file.
+     *
+     * @param file file to save cache to
+     */
+    public void save(File file) {
+        this.dirty.set(false);
+        this.write(file, new HashMap<>(this.entries));
+    }
+
+    private synchronized void write(File file, Map<String, Entry> snapshot) {
+        // Written to temporary file first, so crash while writing doesn't corrupt the cache
+        Path temp = file.toPath().resolveSibling(file.getName() + ".tmp");
+        try (BufferedWriter fileWriter = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            gson.toJson(snapshot, TYPE, fileWriter);
+        } catch (IOException e) {
+            logError("Problem occurred when saving Mojang account cache: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logError("Problem occurred when saving Mojang account cache: " + e.getMessage());
+        }
+    }
+}
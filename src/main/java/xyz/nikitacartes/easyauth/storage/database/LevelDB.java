@@ -2,15 +2,24 @@ package xyz.nikitacartes.easyauth.storage.database;
 
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBException;
+import org.iq80.leveldb.DBIterator;
 import org.iq80.leveldb.Options;
+import org.iq80.leveldb.ReadOptions;
+import org.iq80.leveldb.Snapshot;
 import org.iq80.leveldb.WriteBatch;
 import xyz.nikitacartes.easyauth.EasyAuth;
 import xyz.nikitacartes.easyauth.storage.PlayerCache;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
 
+import static org.iq80.leveldb.impl.Iq80DBFactory.asString;
 import static org.iq80.leveldb.impl.Iq80DBFactory.bytes;
 import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
 import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
@@ -152,4 +161,58 @@ public class LevelDB {
             logError("Error saving player data! " + e.getMessage());
         }
     }
+
+    /**
+     * Iterates over all players' data.
+     * Data is read from a snapshot, so concurrent writes aren't blocked and aren't seen.
+     *
+     * @param consumer consumer of uuid and data of each player
+     */
+    public static void forEachUser(BiConsumer<String, String> consumer) {
+        forEachUserFrom("", true, (uuid, data) -> {
+            consumer.accept(uuid, data);
+            return true;
+        });
+    }
+
+    /**
+     * Iterates over players' data in order of uuids, starting at the given uuid.
+     * Data is read from a snapshot, so concurrent writes aren't blocked and aren't seen.
+     *
+     * @param start uuid to start at, empty to start from the beginning
+     * @param inclusive whether to include the start uuid itself
+     * @param consumer consumer of uuid and data of each player, returns false to stop iterating
+     */
+    public static void forEachUserFrom(String start, boolean inclusive, BiPredicate<String, String> consumer) {
+        try (Snapshot snapshot = levelDBStore.getSnapshot();
+             DBIterator iterator = levelDBStore.iterator(new ReadOptions().snapshot(snapshot))) {
+            for (iterator.seek(bytes("UUID:" + start)); iterator.hasNext(); ) {
+                Entry<byte[], byte[]> entry = iterator.next();
+                String key = asString(entry.getKey());
+                if(!key.startsWith("UUID:"))
+                    break;
+                // Removing "UUID:" and "data:" prefixes
+                String uuid = key.substring(5);
+                if((inclusive || !uuid.equals(start)) && !consumer.test(uuid, asString(entry.getValue()).substring(5)))
+                    break;
+            }
+        } catch (IOException e) {
+            logError("Error reading player data! " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes data of multiple players in one batch.
+     *
+     * @param users map of uuids to data to put inside database
+     * @throws UncheckedIOException if batch couldn't be written
+     */
+    public static void writeUsers(Map<String, String> users) {
+        try (WriteBatch batch = levelDBStore.createWriteBatch()) {
+            users.forEach((uuid, data) -> batch.put(bytes("UUID:" + uuid), bytes("data:" + data)));
+            levelDBStore.write(batch);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
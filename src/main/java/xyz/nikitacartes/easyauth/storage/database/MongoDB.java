@@ -4,17 +4,26 @@ package xyz.nikitacartes.easyauth.storage.database;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.InsertOneModel;
 import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
 import org.bson.Document;
 import xyz.nikitacartes.easyauth.storage.PlayerCache;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
 
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.gte;
 import static xyz.nikitacartes.easyauth.EasyAuth.config;
 
 public class MongoDB {
@@ -35,6 +44,8 @@ public class MongoDB {
         );
         MongoDatabase database = mongoClient.getDatabase(config.mongoDBCredentials.easyAuthDatabase);
         collection = database.getCollection("players");
+        // Players are looked up and listed by uuid
+        collection.createIndex(Indexes.ascending("UUID"));
     }
 
     public static boolean isUserRegistered(String uuid) {
@@ -84,6 +95,56 @@ public class MongoDB {
 
     }
 
+    /**
+     * Iterates over all players' data, streaming it with a cursor.
+     *
+     * @param consumer consumer of uuid and data of each player
+     */
+    public static void forEachUser(BiConsumer<String, String> consumer) {
+        for (Document data : collection.find())
+            consumer.accept(data.getString("UUID"), data.toJson());
+    }
+
+    /**
+     * Iterates over players' data in order of uuids, starting at the given uuid, streaming it with a cursor.
+     *
+     * @param start uuid to start at, empty to start from the beginning
+     * @param inclusive whether to include the start uuid itself
+     * @param consumer consumer of uuid and data of each player, returns false to stop iterating
+     */
+    public static void forEachUserFrom(String start, boolean inclusive, BiPredicate<String, String> consumer) {
+        try (MongoCursor<Document> cursor = collection.find(inclusive ? gte("UUID", start) : gt("UUID", start)).sort(Sorts.ascending("UUID")).iterator()) {
+            while (cursor.hasNext()) {
+                Document data = cursor.next();
+                if(!consumer.test(data.getString("UUID"), data.toJson()))
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Writes data of multiple players in one bulk write, replacing existing documents.
+     *
+     * @param users map of uuids to data to put inside database
+     */
+    public static void writeUsers(Map<String, String> users) {
+        List<ReplaceOneModel<Document>> writeList = new ArrayList<>(users.size());
+        ReplaceOptions upsert = new ReplaceOptions().upsert(true);
+        users.forEach((uuid, data) -> {
+            PlayerCache playerCache = PlayerCache.fromJson(data);
+            writeList.add(new ReplaceOneModel<>(eq("UUID", uuid),
+                    new Document("UUID", uuid)
+                            .append("password", playerCache.password)
+                            .append("is_authenticated", playerCache.isAuthenticated)
+                            .append("last_ip", playerCache.lastIp)
+                            .append("valid_until", playerCache.validUntil),
+                    upsert
+            ));
+        });
+        if(!writeList.isEmpty())
+            collection.bulkWrite(writeList);
+    }
+
     public static boolean close() {
         mongoClient.close();
         return true;
@@ -0,0 +1,74 @@
+package xyz.nikitacartes.easyauth.utils;
+
+import com.google.gson.JsonParseException;
+import xyz.nikitacartes.easyauth.storage.PlayerCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static xyz.nikitacartes.easyauth.EasyAuth.DB;
+
+/**
+ * Pages through accounts in database, for {@code /auth list} and {@code /auth find}.
+ * <p>
+ * Accounts are read in order of uuids, from a snapshot (LevelDB) or a cursor (MongoDB),
+ * so nothing is loaded into memory and writes aren't blocked.
+ * Each page continues after the last uuid of the previous one, and reads at most {@link #MAX_SCANNED} accounts,
+ * so a search with few matches on a big database returns a partial page instead of reading everything at once.
+ */
+public class AccountSearch {
+    public static final int PAGE_SIZE = 10;
+    public static final int MAX_SCANNED = 50_000;
+
+    public static class Account {
+        public final String uuid;
+        public final PlayerCache data;
+
+        private Account(String uuid, PlayerCache data) {
+            this.uuid = uuid;
+            this.data = data;
+        }
+    }
+
+    public static class Page {
+        public final List<Account> accounts = new ArrayList<>(PAGE_SIZE);
+        /**
+         * Uuid to continue after, null if there are no more accounts.
+         */
+        public String next;
+        public int scanned;
+    }
+
+    /**
+     * Reads a page of accounts. Blocks, so it shouldn't be called from server thread.
+     *
+     * @param after uuid to continue after, empty for the first page
+     * @param prefix prefix of uuids to search, empty for all accounts
+     * @param filter filter of accounts
+     * @return page of matching accounts
+     */
+    public static Page find(String after, String prefix, Predicate<PlayerCache> filter) {
+        Page page = new Page();
+        // Uuids starting with prefix are all at or after it, prefix itself can be a full uuid
+        boolean fromPrefix = after.compareTo(prefix) < 0;
+        DB.forEachUserFrom(fromPrefix ? prefix : after, fromPrefix, (uuid, data) -> {
+            if(!uuid.startsWith(prefix))
+                return false;
+            page.scanned++;
+            try {
+                PlayerCache playerCache = PlayerCache.fromJson(data);
+                if(filter.test(playerCache))
+                    page.accounts.add(new Account(uuid, playerCache));
+            } catch (JsonParseException ignored) {
+                // Corrupted data isn't listed
+            }
+            if(page.accounts.size() < PAGE_SIZE && page.scanned < MAX_SCANNED)
+                return true;
+            // Stopped before the end, next page continues from here
+            page.next = uuid;
+            return false;
+        });
+        return page;
+    }
+}
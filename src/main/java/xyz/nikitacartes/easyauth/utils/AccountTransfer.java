@@ -0,0 +1,377 @@
+package xyz.nikitacartes.easyauth.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import net.minecraft.server.MinecraftServer;
+import xyz.nikitacartes.easyauth.storage.PlayerCache;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static xyz.nikitacartes.easyauth.EasyAuth.*;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logInfo;
+
+/**
+ * Exports and imports accounts as JSON lines (one account per line, gzipped if file name ends with .gz).
+ * <p>
+ * Each line is player's data as stored in DB with {@code uuid} added, e.g.
+ * {@code {"uuid":"...","password":"$argon2id$...","last_ip":"...","valid_until":0}}.
+ * Instead of {@code password}, imported lines can contain {@code plaintext}, which is hashed with admin priority.
+ * <p>
+ * Both directions stream the file and the database, so memory use doesn't depend on number of accounts.
+ * Imported accounts are written in batches, several batches at a time.
+ * Files must be inside mods/EasyAuth.
+ */
+public class AccountTransfer {
+    public static class Result {
+        public final long accounts;
+        public final long hashed;
+        public final long skipped;
+        public final long invalid;
+        /**
+         * Number of accounts that couldn't be hashed or written to DB.
+         */
+        public final long failed;
+        public final double seconds;
+
+        private Result(long accounts, long hashed, long skipped, long invalid, long failed, long startNanos) {
+            this.accounts = accounts;
+            this.hashed = hashed;
+            this.skipped = skipped;
+            this.invalid = invalid;
+            this.failed = failed;
+            this.seconds = (System.nanoTime() - startNanos) / 1e9;
+        }
+
+        public String getSeconds() {
+            return String.format(Locale.ROOT, "%.1f", this.seconds);
+        }
+    }
+
+    private static final Gson gson = new Gson();
+    private static final AtomicBoolean running = new AtomicBoolean(false);
+    private static final int BATCH_SIZE = 1000;
+    private static final int PARALLEL_BATCHES = 4;
+    private static final int PENDING_HASHES = 64;
+    private static final long PROGRESS_INTERVAL_NANOS = 5_000_000_000L;
+
+    /**
+     * Starts exporting all accounts to a file.
+     *
+     * @param file file to write, relative to mods/EasyAuth
+     * @return future completed with the result, or null if a transfer is already running
+     */
+    public static CompletableFuture<Result> exportAccounts(String file) {
+        if(!running.compareAndSet(false, true))
+            return null;
+        CompletableFuture<Result> result = CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            long[] exported = {0};
+            long[] invalid = {0};
+            long[] lastProgress = {start};
+            try (BufferedWriter writer = openWriter(resolve(file))) {
+                DB.forEachUser((uuid, data) -> {
+                    PlayerCache playerCache;
+                    try {
+                        playerCache = PlayerCache.fromJson(data);
+                    } catch (JsonParseException e) {
+                        playerCache = null;
+                    }
+                    if(playerCache == null) {
+                        // Corrupted data is skipped, so it doesn't stop the export
+                        invalid[0]++;
+                        return;
+                    }
+                    String json = playerCache.toJson();
+                    try {
+                        // Data is always a non-empty JSON object, so uuid is put in front of its fields
+                        writer.write("{\"uuid\":" + gson.toJson(uuid) + "," + json.substring(1));
+                        writer.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    if(++exported[0] % 4096 == 0 && System.nanoTime() - lastProgress[0] > PROGRESS_INTERVAL_NANOS) {
+                        lastProgress[0] = System.nanoTime();
+                        logProgress("Exported", exported[0], start);
+                    }
+                });
+            } catch (IOException | UncheckedIOException e) {
+                throw new CompletionException(e);
+            }
+            if(invalid[0] > 0)
+                logError("Skipped " + invalid[0] + " accounts with corrupted data when exporting.");
+            return new Result(exported[0], 0, 0, invalid[0], 0, start);
+        }, THREADPOOL);
+        result.whenComplete((r, e) -> running.set(false));
+        return result;
+    }
+
+    /**
+     * Starts importing accounts from a file.
+     * Accounts of players which are cached (online) are updated in their cache too, on server thread.
+     *
+     * @param server server to update cached players on
+     * @param file file to read, relative to mods/EasyAuth
+     * @param replace whether to overwrite existing accounts, otherwise they are skipped
+     * @return future completed with the result, or null if a transfer is already running
+     */
+    public static CompletableFuture<Result> importAccounts(MinecraftServer server, String file, boolean replace) {
+        if(!running.compareAndSet(false, true))
+            return null;
+        CompletableFuture<Result> result = CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            Importer importer = new Importer(server, replace);
+            long lastProgress = start;
+            try (BufferedReader reader = openReader(resolve(file))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if(!line.isBlank())
+                        importer.read(line);
+                    if(System.nanoTime() - lastProgress > PROGRESS_INTERVAL_NANOS) {
+                        lastProgress = System.nanoTime();
+                        logProgress("Imported", importer.written.sum(), start);
+                    }
+                }
+                importer.finish();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            return new Result(importer.written.sum(), importer.hashed.sum(), importer.skipped.sum(), importer.invalid.sum(), importer.failed.sum(), start);
+        }, THREADPOOL);
+        result.whenComplete((r, e) -> running.set(false));
+        return result;
+    }
+
+    /**
+     * Collects imported accounts into batches and writes them in parallel.
+     */
+    private static class Importer {
+        private final MinecraftServer server;
+        private final boolean replace;
+        private final Semaphore pendingHashes = new Semaphore(PENDING_HASHES);
+        private final Semaphore pendingBatches = new Semaphore(PARALLEL_BATCHES);
+        private final LongAdder written = new LongAdder();
+        private final LongAdder hashed = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder invalid = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private Map<String, String> batch = new HashMap<>();
+        // Full batches waiting to be written by the reader thread
+        private final ConcurrentLinkedQueue<Map<String, String>> fullBatches = new ConcurrentLinkedQueue<>();
+
+        private Importer(MinecraftServer server, boolean replace) {
+            this.server = server;
+            this.replace = replace;
+        }
+
+        /**
+         * Parses a line and adds it to current batch, or schedules hashing of its password.
+         * Blocks if too many passwords are being hashed or batches are being written.
+         */
+        private void read(String line) throws InterruptedException {
+            this.writeFull();
+            String uuid;
+            String plaintext;
+            try {
+                JsonObject json = JsonParser.parseString(line).getAsJsonObject();
+                uuid = getString(json, "uuid");
+                plaintext = getString(json, "plaintext");
+            } catch (JsonParseException | IllegalStateException e) {
+                this.invalid.increment();
+                return;
+            }
+            if(uuid == null || uuid.isEmpty()) {
+                this.invalid.increment();
+                return;
+            }
+
+            if(plaintext != null) {
+                if(!this.replace && DB.isUserRegistered(uuid)) {
+                    // Checked before hashing, to not waste time on it
+                    this.skipped.increment();
+                    return;
+                }
+                PlayerCache playerCache = new PlayerCache();
+                this.pendingHashes.acquire();
+                // Admin priority, so logins aren't slowed down by the import
+                HASHING.submit(HashingScheduler.Priority.ADMIN, "import", () -> {
+                    try {
+                        playerCache.password = AuthHelper.hashPassword(plaintext.toCharArray());
+                    } catch (RuntimeException e) {
+                        playerCache.password = null;
+                    }
+                    try {
+                        if(playerCache.password == null) {
+                            this.failed.increment();
+                            return;
+                        }
+                        this.hashed.increment();
+                        this.add(uuid, playerCache);
+                    } finally {
+                        this.pendingHashes.release();
+                    }
+                });
+                return;
+            }
+
+            PlayerCache playerCache;
+            try {
+                playerCache = PlayerCache.fromJson(line);
+            } catch (JsonParseException e) {
+                this.invalid.increment();
+                return;
+            }
+            if(playerCache.password == null || playerCache.password.isEmpty()) {
+                this.invalid.increment();
+                return;
+            }
+            this.add(uuid, playerCache);
+        }
+
+        /**
+         * Adds the account to current batch. Full batch is queued for the reader thread,
+         * so hashing workers never wait for batches to be written.
+         */
+        private void add(String uuid, PlayerCache playerCache) {
+            synchronized (this) {
+                this.batch.put(uuid, playerCache.toJson());
+                if(this.batch.size() >= BATCH_SIZE) {
+                    this.fullBatches.add(this.batch);
+                    this.batch = new HashMap<>();
+                }
+            }
+        }
+
+        /**
+         * Writes queued full batches, called only from the reader thread.
+         */
+        private void writeFull() {
+            Map<String, String> users;
+            while ((users = this.fullBatches.poll()) != null)
+                this.write(users);
+        }
+
+        /**
+         * Writes the batch on thread pool, waiting if too many batches are being written.
+         */
+        private void write(Map<String, String> users) {
+            this.pendingBatches.acquireUninterruptibly();
+            THREADPOOL.execute(() -> {
+                try {
+                    if(!this.replace) {
+                        int size = users.size();
+                        users.keySet().removeIf(DB::isUserRegistered);
+                        this.skipped.add(size - users.size());
+                    }
+                    DB.writeUsers(users);
+                    this.written.add(users.size());
+                    this.updateCache(users);
+                } catch (RuntimeException e) {
+                    this.failed.add(users.size());
+                    logError("Error importing accounts: " + e.getMessage());
+                } finally {
+                    this.pendingBatches.release();
+                }
+            });
+        }
+
+        /**
+         * Updates cache of imported players, as cache would be saved over imported data.
+         */
+        private void updateCache(Map<String, String> users) {
+            this.server.execute(() -> users.forEach((uuid, data) -> {
+                PlayerCache playerCache = playerCacheMap.get(uuid);
+                if(playerCache != null && (this.replace || playerCache.password.isEmpty()))
+                    playerCache.password = PlayerCache.fromJson(data).password;
+            }));
+        }
+
+        /**
+         * Waits for all passwords to be hashed and all batches to be written.
+         */
+        private void finish() throws InterruptedException {
+            this.pendingHashes.acquire(PENDING_HASHES);
+            this.writeFull();
+            Map<String, String> last;
+            synchronized (this) {
+                last = this.batch;
+                this.batch = new HashMap<>();
+            }
+            if(!last.isEmpty())
+                this.write(last);
+            this.pendingBatches.acquire(PARALLEL_BATCHES);
+        }
+    }
+
+    /**
+     * Gets string field of the line.
+     *
+     * @throws JsonParseException if field isn't a string or number
+     */
+    private static String getString(JsonObject json, String key) {
+        JsonElement element = json.get(key);
+        if(element == null || element.isJsonNull())
+            return null;
+        if(!element.isJsonPrimitive())
+            throw new JsonParseException("Field " + key + " must be a string");
+        return element.getAsString();
+    }
+
+    private static void logProgress(String action, long accounts, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        logInfo("{} {} accounts ({} per second).", action, accounts, (long) (accounts / seconds));
+    }
+
+    /**
+     * Resolves the file in mods/EasyAuth.
+     *
+     * @throws IOException if the path leads outside of mods/EasyAuth
+     */
+    private static Path resolve(String file) throws IOException {
+        Path directory = gameDirectory.resolve("mods/EasyAuth").toAbsolutePath().normalize();
+        Path path;
+        try {
+            path = directory.resolve(file).normalize();
+        } catch (InvalidPathException e) {
+            throw new IOException("Invalid file name " + file);
+        }
+        if(!path.startsWith(directory) || path.equals(directory))
+            throw new IOException("File " + file + " is outside of mods/EasyAuth");
+        return path;
+    }
+
+    private static BufferedWriter openWriter(Path file) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        if(file.toString().endsWith(".gz"))
+            out = new GZIPOutputStream(out, 1 << 16);
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private static BufferedReader openReader(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if(file.toString().endsWith(".gz"))
+            in = new GZIPInputStream(in, 1 << 16);
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+    }
+}
@@ -0,0 +1,389 @@
+package xyz.nikitacartes.easyauth.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static xyz.nikitacartes.easyauth.EasyAuth.config;
+import static xyz.nikitacartes.easyauth.EasyAuth.gameDirectory;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
+
+/**
+ * Security audit log (logins, failed attempts, registrations, password changes, admin actions and premium decisions).
+ * <p>
+ * Events are put into a lock-free queue and written in batches by a background thread,
+ * as one JSON object per line into {@code mods/EasyAuth/audit/audit-<date>.jsonl}.
+ * Files are rotated daily or when they get too big, rotated files are gzipped,
+ * and files older than {@link xyz.nikitacartes.easyauth.storage.AuthConfig.ExperimentalConfig#auditRetentionDays} are deleted.
+ */
+public class AuditLog {
+    public enum Type {
+        LOGIN,
+        LOGIN_FAILED,
+        LOGOUT,
+        REGISTER,
+        PASSWORD_CHANGE,
+        UNREGISTER,
+        ADMIN,
+        PREMIUM_DECISION
+    }
+
+    /**
+     * Single audit event, serialized as a line of JSON.
+     */
+    public static class Event {
+        public final long time;
+        public final Type type;
+        public final String player;
+        public final String ip;
+        public final String detail;
+
+        private Event(long time, Type type, String player, String ip, String detail) {
+            this.time = time;
+            this.type = type;
+            this.player = player;
+            this.ip = ip;
+            this.detail = detail;
+        }
+    }
+
+    private static final Gson gson = new Gson();
+    private static final int CAPACITY = 65536;
+    private static final int BATCH_SIZE = 512;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_FILE_SIZE = 64L * 1024 * 1024;
+    private static final String PREFIX = "audit-";
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private static final ConcurrentLinkedQueue<Event> queue = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger queued = new AtomicInteger();
+    private static final LongAdder dropped = new LongAdder();
+    private static final Object lock = new Object();
+
+    // Guarded by lock
+    private static BufferedWriter writer;
+    private static LocalDate writerDate;
+    private static long writerSize;
+
+    private static volatile Thread writerThread;
+
+    /**
+     * Records an event, without blocking.
+     *
+     * @param type type of the event
+     * @param player name of the player the event is about
+     * @param ip IP of the player, null if unknown
+     * @param detail additional information, can be null
+     */
+    public static void record(Type type, String player, String ip, String detail) {
+        if(!config.experimental.auditLog)
+            return;
+        if(queued.incrementAndGet() > CAPACITY) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.add(new Event(System.currentTimeMillis(), type, player, ip, detail));
+        Thread thread = writerThread;
+        if(thread != null && queued.get() >= BATCH_SIZE)
+            LockSupport.unpark(thread);
+    }
+
+    /**
+     * Starts the writer thread and compresses files left from previous runs.
+     */
+    public static void start() {
+        if(!config.experimental.auditLog || writerThread != null)
+            return;
+        synchronized (lock) {
+            rotate(LocalDate.now());
+        }
+        Thread thread = new Thread(AuditLog::run, "EasyAuth Audit");
+        thread.setDaemon(true);
+        writerThread = thread;
+        thread.start();
+    }
+
+    /**
+     * Writes remaining events and stops the writer thread.
+     */
+    public static void stop() {
+        Thread thread = writerThread;
+        if(thread == null)
+            return;
+        writerThread = null;
+        thread.interrupt();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            flush();
+            closeWriter();
+        }
+    }
+
+    /**
+     * Gets the number of events dropped because the queue was full.
+     *
+     * @return number of dropped events
+     */
+    public static long getDropped() {
+        return dropped.sum();
+    }
+
+    private static void run() {
+        while (writerThread == Thread.currentThread()) {
+            LockSupport.parkNanos(FLUSH_INTERVAL_NANOS);
+            synchronized (lock) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Writes queued events to the current file. Must hold the lock.
+     */
+    private static void flush() {
+        if(queue.isEmpty())
+            return;
+        try {
+            LocalDate today = LocalDate.now();
+            if(writer == null || !today.equals(writerDate) || writerSize > MAX_FILE_SIZE)
+                rotate(today);
+            if(writer == null)
+                return;
+            Event event;
+            while ((event = queue.poll()) != null) {
+                queued.decrementAndGet();
+                String line = gson.toJson(event);
+                writer.write(line);
+                writer.write('\n');
+                writerSize += line.length() + 1;
+            }
+            writer.flush();
+        } catch (IOException e) {
+            logError("Couldn't write audit log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes current file, compresses all uncompressed files except today's one,
+     * deletes expired files and opens today's file. Must hold the lock.
+     */
+    private static void rotate(LocalDate today) {
+        closeWriter();
+        Path dir = getDirectory();
+        try {
+            Files.createDirectories(dir);
+            Path current = dir.resolve(PREFIX + today + ".jsonl");
+            if(Files.exists(current) && Files.size(current) > MAX_FILE_SIZE)
+                compress(current);
+
+            LocalDate expired = today.minusDays(config.experimental.auditRetentionDays);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*")) {
+                for (Path file : files) {
+                    LocalDate date = getDate(file);
+                    if(date == null)
+                        continue;
+                    if(config.experimental.auditRetentionDays > 0 && date.isBefore(expired))
+                        Files.delete(file);
+                    else if(file.toString().endsWith(".jsonl") && !date.equals(today))
+                        compress(file);
+                }
+            }
+
+            writer = Files.newBufferedWriter(current, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            writerDate = today;
+            writerSize = Files.size(current);
+        } catch (IOException e) {
+            logError("Couldn't rotate audit log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gzips the file to the first free {@code audit-<date>.<n>.jsonl.gz} and deletes the original.
+     */
+    private static void compress(Path file) throws IOException {
+        String base = file.getFileName().toString().replace(".jsonl", "");
+        Path target;
+        int i = 0;
+        do {
+            target = file.resolveSibling(base + "." + i++ + ".jsonl.gz");
+        } while (Files.exists(target));
+        try (InputStream in = Files.newInputStream(file);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(target))) {
+            in.transferTo(out);
+        }
+        Files.delete(file);
+    }
+
+    private static void closeWriter() {
+        if(writer == null)
+            return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logError("Couldn't close audit log: " + e.getMessage());
+        }
+        writer = null;
+    }
+
+    /**
+     * Finds events of player or IP in given time range.
+     * Only files from days in the range are read, line by line, and only matching lines are parsed.
+     *
+     * @param target player name (case-insensitive) or IP
+     * @param from start of the range, in epoch millis
+     * @param to end of the range, in epoch millis
+     * @param limit maximum number of events to return
+     * @return latest matching events, oldest first
+     */
+    public static List<Event> query(String target, long from, long to, int limit) {
+        synchronized (lock) {
+            // Events still in queue should be found too
+            flush();
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate fromDate = Instant.ofEpochMilli(from).atZone(zone).toLocalDate();
+        LocalDate toDate = Instant.ofEpochMilli(to).atZone(zone).toLocalDate();
+        String quotedTarget = gson.toJson(target);
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(getDirectory(), PREFIX + "*")) {
+            for (Path file : stream) {
+                LocalDate date = getDate(file);
+                if(date != null && !date.isBefore(fromDate) && !date.isAfter(toDate))
+                    files.add(file);
+            }
+        } catch (IOException e) {
+            return new ArrayList<>();
+        }
+        // Oldest first, so the newest events are kept when limit is reached
+        files.sort(Comparator.comparing(AuditLog::getDate).thenComparingInt(AuditLog::getRotation));
+
+        ArrayDeque<Event> found = new ArrayDeque<>(limit);
+        for (Path file : files) {
+            try (BufferedReader reader = open(file)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // Cheap check first, parsing only possible matches
+                    if(!containsIgnoreCase(line, quotedTarget))
+                        continue;
+                    Event event;
+                    try {
+                        event = gson.fromJson(line, Event.class);
+                    } catch (JsonParseException e) {
+                        continue;
+                    }
+                    if(event == null || event.time < from || event.time > to)
+                        continue;
+                    if(!target.equalsIgnoreCase(event.player) && !target.equals(event.ip))
+                        continue;
+                    if(found.size() == limit)
+                        found.poll();
+                    found.add(event);
+                }
+            } catch (IOException e) {
+                logError("Couldn't read audit log " + file.getFileName() + ": " + e.getMessage());
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * Formats result of {@link #query(String, long, long, int)} for {@code /auth audit}.
+     *
+     * @param target player name or IP that was searched for
+     * @param hours how many hours back were searched
+     * @param events found events
+     * @return human readable report, one message per line
+     */
+    public static List<LangMessage> report(String target, int hours, List<Event> events) {
+        List<LangMessage> report = new ArrayList<>(events.size() + 1);
+        report.add(new LangMessage("auditHeader", config.lang.auditHeader, target, hours, events.size()));
+        for (Event event : events) {
+            String time = TIME_FORMAT.format(Instant.ofEpochMilli(event.time));
+            String ip = event.ip != null ? event.ip : "-";
+            if(event.detail != null)
+                report.add(new LangMessage("auditEventDetail", config.lang.auditEventDetail, time, event.type, event.player, ip, event.detail));
+            else
+                report.add(new LangMessage("auditEvent", config.lang.auditEvent, time, event.type, event.player, ip));
+        }
+        return report;
+    }
+
+    private static BufferedReader open(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if(file.toString().endsWith(".gz"))
+            in = new GZIPInputStream(in);
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private static boolean containsIgnoreCase(String line, String part) {
+        int max = line.length() - part.length();
+        for (int i = 0; i <= max; i++) {
+            if(line.regionMatches(true, i, part, 0, part.length()))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the date from name of audit file.
+     *
+     * @return date of the file or null if it's not an audit file
+     */
+    private static LocalDate getDate(Path file) {
+        String name = file.getFileName().toString();
+        if(!name.startsWith(PREFIX) || name.length() < PREFIX.length() + 10)
+            return null;
+        try {
+            return LocalDate.parse(name.substring(PREFIX.length(), PREFIX.length() + 10));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the rotation number from name of audit file, uncompressed file of the day is the last one.
+     */
+    private static int getRotation(Path file) {
+        String name = file.getFileName().toString();
+        if(!name.endsWith(".jsonl.gz"))
+            return Integer.MAX_VALUE;
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length() + 11, name.length() - ".jsonl.gz".length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    private static Path getDirectory() {
+        return gameDirectory.resolve("mods/EasyAuth/audit");
+    }
+}
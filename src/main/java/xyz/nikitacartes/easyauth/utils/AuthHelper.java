@@ -1,14 +1,32 @@
 package xyz.nikitacartes.easyauth.utils;
 
-import xyz.nikitacartes.easyauth.utils.hashing.HasherArgon2;
-import xyz.nikitacartes.easyauth.utils.hashing.HasherBCrypt;
+import xyz.nikitacartes.easyauth.storage.PlayerCache;
+import xyz.nikitacartes.easyauth.utils.hashing.Hasher;
+import xyz.nikitacartes.easyauth.utils.hashing.HasherRegistry;
 
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static xyz.nikitacartes.easyauth.EasyAuth.HASHING;
 import static xyz.nikitacartes.easyauth.EasyAuth.config;
 import static xyz.nikitacartes.easyauth.EasyAuth.playerCacheMap;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logDebug;
 
 public class AuthHelper {
     /**
-     * Checks password of user
+     * Maximum number of rehashes waiting for the hashing thread.
+     * Each holds a copy of the plaintext password, so when there are more, rehashing is left for a later login.
+     */
+    private static final int MAX_PENDING_REHASHES = 256;
+    // Uuids of players whose rehash is pending
+    private static final Set<String> pendingRehashes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Checks password of user.
+     * If password is correct but was hashed with outdated algorithm or cost,
+     * it gets rehashed in the background.
      *
      * @param uuid uuid of player, stored in database
      * @param password password that needs to be checked
@@ -20,12 +38,32 @@ public class AuthHelper {
             return verifyPassword(password, config.main.globalPassword) ? PasswordOptions.CORRECT : PasswordOptions.WRONG;
         }
         else {
-            String hashed = playerCacheMap.get(uuid).password;
+            PlayerCache playerCache = playerCacheMap.get(uuid);
+            String hashed = playerCache.password;
             if(hashed.isEmpty())
                 return PasswordOptions.NOT_REGISTERED;
 
+            // Verifying wipes the password, so we need a copy for rehashing
+            char[] passwordCopy = needsRehash(hashed) && reserveRehash(uuid) ? password.clone() : null;
+
             // Verify password
-            return verifyPassword(password, hashed) ? PasswordOptions.CORRECT : PasswordOptions.WRONG;
+            if(!verifyPassword(password, hashed)) {
+                if(passwordCopy != null) {
+                    Arrays.fill(passwordCopy, '\0');
+                    pendingRehashes.remove(uuid);
+                }
+                return PasswordOptions.WRONG;
+            }
+            if(passwordCopy != null)
+                HASHING.submit(HashingScheduler.Priority.ADMIN, "rehash", () -> {
+                    try {
+                        rehashPassword(playerCache, hashed, passwordCopy);
+                    } finally {
+                        Arrays.fill(passwordCopy, '\0');
+                        pendingRehashes.remove(uuid);
+                    }
+                });
+            return PasswordOptions.CORRECT;
         }
     }
 
@@ -36,17 +74,75 @@ public class AuthHelper {
      * @return hashed password as string
      */
     public static String hashPassword(char[] password) {
-        if(config.experimental.useBCryptLibrary)
-            return HasherBCrypt.hash(password);
-        else
-            return HasherArgon2.hash(password);
+        long start = System.nanoTime();
+        String hashed = HasherRegistry.getConfigured().hash(password);
+        AuthMetrics.HASH_CREATE.recordSince(start);
+        return hashed;
     }
 
+    /**
+     * Verifies password with the algorithm the hash was created with,
+     * regardless of the one currently set in config.
+     *
+     * @param pass character array of password string
+     * @param hashed hashed password
+     * @return true if password was correct
+     */
     private static boolean verifyPassword(char[] pass, String hashed) {
-        if(config.experimental.useBCryptLibrary)
-            return HasherBCrypt.verify(pass, hashed);
-        else
-            return HasherArgon2.verify(pass, hashed);
+        Hasher hasher = HasherRegistry.forHash(hashed);
+        if(hasher == null) {
+            logError("Unknown password hash format, cannot verify password.");
+            return false;
+        }
+        long start = System.nanoTime();
+        boolean correct = hasher.verify(pass, hashed);
+        AuthMetrics.HASH_VERIFY.recordSince(start);
+        return correct;
+    }
+
+    /**
+     * Checks whether the hash was created with other algorithm or cost
+     * than the one currently set in config.
+     *
+     * @param hashed hashed password
+     * @return true if password should be hashed again
+     */
+    private static boolean needsRehash(String hashed) {
+        return HasherRegistry.getConfigured().needsRehash(hashed);
+    }
+
+    /**
+     * Reserves a rehash for the player, unless one is already pending or too many are.
+     * Skipped rehashes are retried on the next login.
+     *
+     * @param uuid uuid of player
+     * @return true if rehash can be submitted
+     */
+    private static boolean reserveRehash(String uuid) {
+        if(pendingRehashes.size() >= MAX_PENDING_REHASHES)
+            return false;
+        return pendingRehashes.add(uuid);
+    }
+
+    /**
+     * Replaces outdated hash in player's cache, which is saved to DB with the rest of the cache.
+     *
+     * @param playerCache cache of the player to update hash for
+     * @param oldHash hash that was verified
+     * @param password verified password, wiped afterwards
+     */
+    private static void rehashPassword(PlayerCache playerCache, String oldHash, char[] password) {
+        String newHash = hashPassword(password);
+        Arrays.fill(password, '\0');
+        if(newHash == null)
+            return;
+        synchronized (playerCache) {
+            // Password might have been changed in the meantime
+            if(!playerCache.password.equals(oldHash))
+                return;
+            playerCache.password = newHash;
+        }
+        logDebug("Rehashed outdated password hash.");
     }
 
     public enum PasswordOptions {
@@ -0,0 +1,384 @@
+package xyz.nikitacartes.easyauth.utils;
+
+import com.sun.net.httpserver.HttpServer;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static xyz.nikitacartes.easyauth.EasyAuth.*;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logInfo;
+
+/**
+ * Low overhead metrics of EasyAuth.
+ * <p>
+ * Counters are {@link LongAdder}s and latencies are recorded into {@link Histogram}s,
+ * so recording never blocks and costs a few atomic additions.
+ * Metrics can be read with {@code /auth stats}, and are exported in Prometheus text format
+ * to {@link xyz.nikitacartes.easyauth.storage.AuthConfig.ExperimentalConfig#metricsFile a file}
+ * and / or {@link xyz.nikitacartes.easyauth.storage.AuthConfig.ExperimentalConfig#metricsPort a local endpoint}.
+ */
+public class AuthMetrics {
+    public static final Histogram LOGIN = new Histogram();
+    public static final Histogram REGISTER = new Histogram();
+    public static final Histogram HASH_VERIFY = new Histogram();
+    public static final Histogram HASH_CREATE = new Histogram();
+    public static final Histogram MOJANG_LOOKUP = new Histogram();
+    public static final Histogram LEVELDB_READ = new Histogram();
+    public static final Histogram LEVELDB_WRITE = new Histogram();
+    public static final Histogram MONGODB_READ = new Histogram();
+    public static final Histogram MONGODB_WRITE = new Histogram();
+    // Writes of many accounts at once, kept apart so they don't skew single writes
+    public static final Histogram LEVELDB_BATCH_WRITE = new Histogram();
+    public static final Histogram MONGODB_BATCH_WRITE = new Histogram();
+
+    public static final LongAdder LOGIN_FAILURES = new LongAdder();
+    public static final LongAdder MOJANG_FAILURES = new LongAdder();
+    public static final LongAdder PLAYER_CACHE_HITS = new LongAdder();
+    public static final LongAdder PLAYER_CACHE_MISSES = new LongAdder();
+    public static final LongAdder PREMIUM_CACHE_HITS = new LongAdder();
+    public static final LongAdder PREMIUM_CACHE_MISSES = new LongAdder();
+    public static final LongAdder PREMIUM_CACHE_EVICTIONS = new LongAdder();
+
+    // Updated on server thread, read by exporters
+    private static volatile int unauthenticatedPlayers = 0;
+    private static volatile int playerCacheSize = 0;
+    private static volatile float mspt = 0;
+
+    private static int ticks = 0;
+    private static HttpServer httpServer;
+
+    /**
+     * Latency histogram with buckets growing exponentially, each power of two split into
+     * {@link #SUB_BUCKETS} linear sub-buckets, so values are kept with at most 12.5% error.
+     * Values are in microseconds.
+     */
+    public static class Histogram {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        /**
+         * Records time passed since start.
+         *
+         * @param startNanos start time, from {@link System#nanoTime()}
+         */
+        public void recordSince(long startNanos) {
+            this.record((System.nanoTime() - startNanos) / 1000);
+        }
+
+        /**
+         * Records a value.
+         *
+         * @param micros value in microseconds
+         */
+        public void record(long micros) {
+            if(micros < 0)
+                micros = 0;
+            this.counts.incrementAndGet(index(micros));
+            this.count.increment();
+            this.sum.add(micros);
+            this.max.accumulate(micros);
+        }
+
+        public long getCount() {
+            return this.count.sum();
+        }
+
+        public long getSum() {
+            return this.sum.sum();
+        }
+
+        public long getMax() {
+            return this.max.get();
+        }
+
+        /**
+         * Gets the value below which the given fraction of recorded values falls.
+         *
+         * @param quantile fraction between 0 and 1
+         * @return upper bound of the bucket holding the quantile, in microseconds
+         */
+        public long getQuantile(double quantile) {
+            long total = 0;
+            long[] snapshot = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = this.counts.get(i);
+                total += snapshot[i];
+            }
+            if(total == 0)
+                return 0;
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if(seen >= rank)
+                    return Math.min(upperBound(i), this.getMax());
+            }
+            return this.getMax();
+        }
+
+        private static int index(long value) {
+            if(value < SUB_BUCKETS)
+                return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            int subBucket = (int) (value >>> exponent) - SUB_BUCKETS;
+            return Math.min(BUCKETS - 1, (exponent + 1) * SUB_BUCKETS + subBucket);
+        }
+
+        private static long upperBound(int index) {
+            if(index < SUB_BUCKETS)
+                return index;
+            int exponent = index / SUB_BUCKETS - 1;
+            long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+            return ((subBucket + 1) << exponent) - 1;
+        }
+    }
+
+    /**
+     * Starts the metrics endpoint, if enabled in config.
+     */
+    public static void start() {
+        int port = config.experimental.metricsPort;
+        if(port <= 0)
+            return;
+        try {
+            httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            httpServer.setExecutor(THREADPOOL);
+            httpServer.createContext("/metrics", exchange -> {
+                byte[] body = toPrometheus().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            httpServer.start();
+            logInfo("Serving metrics on http://127.0.0.1:" + port + "/metrics");
+        } catch (IOException e) {
+            logError("Couldn't start metrics endpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the metrics endpoint.
+     */
+    public static void stop() {
+        if(httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+    }
+
+    /**
+     * Updates gauges and writes metrics file every {@link xyz.nikitacartes.easyauth.storage.AuthConfig.ExperimentalConfig#metricsInterval} seconds.
+     * Called at the end of each server tick.
+     *
+     * @param server server to read players from
+     */
+    public static void tick(MinecraftServer server) {
+        if(++ticks < Math.max(1, config.experimental.metricsInterval) * 20)
+            return;
+        ticks = 0;
+        update(server);
+
+        String metricsFile = config.experimental.metricsFile;
+        if(metricsFile == null || metricsFile.isEmpty())
+            return;
+        String metrics = toPrometheus();
+        THREADPOOL.execute(() -> {
+            // Written to temporary file first, so scrapers never read half of the file
+            Path file = gameDirectory.resolve(metricsFile);
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                Files.writeString(temp, metrics, StandardCharsets.UTF_8);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                logError("Couldn't write metrics file: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Updates gauges that have to be read on server thread.
+     *
+     * @param server server to read players from
+     */
+    public static void update(MinecraftServer server) {
+        int unauthenticated = 0;
+        for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
+            if(!((PlayerAuth) player).isAuthenticated())
+                unauthenticated++;
+        }
+        unauthenticatedPlayers = unauthenticated;
+        playerCacheSize = playerCacheMap.size();
+        mspt = server.getTickTime();
+    }
+
+    /**
+     * Formats metrics for {@code /auth stats}.
+     *
+     * @return human readable summary, one message per line
+     */
+    public static List<LangMessage> summary() {
+        String backend = config.main.useMongoDB ? "MongoDB" : "LevelDB";
+        List<LangMessage> lines = new ArrayList<>();
+        lines.add(new LangMessage("statsPlayers", config.lang.statsPlayers, unauthenticatedPlayers, HASHING.getQueueSize()));
+        lines.add(summary("statsLogin", config.lang.statsLogin, LOGIN, LOGIN_FAILURES.sum()));
+        lines.add(summary("statsRegister", config.lang.statsRegister, REGISTER));
+        lines.add(summary("statsHashVerify", config.lang.statsHashVerify, HASH_VERIFY));
+        lines.add(summary("statsHashCreate", config.lang.statsHashCreate, HASH_CREATE));
+        lines.add(summary("statsStorageRead", config.lang.statsStorageRead, config.main.useMongoDB ? MONGODB_READ : LEVELDB_READ, backend));
+        lines.add(summary("statsStorageWrite", config.lang.statsStorageWrite, config.main.useMongoDB ? MONGODB_WRITE : LEVELDB_WRITE, backend));
+        lines.add(summary("statsStorageBatchWrite", config.lang.statsStorageBatchWrite, config.main.useMongoDB ? MONGODB_BATCH_WRITE : LEVELDB_BATCH_WRITE, backend));
+        lines.add(summary("statsMojangLookup", config.lang.statsMojangLookup, MOJANG_LOOKUP, MOJANG_FAILURES.sum()));
+        lines.add(new LangMessage("statsPlayerCache", config.lang.statsPlayerCache, playerCacheSize, PLAYER_CACHE_HITS.sum(), PLAYER_CACHE_MISSES.sum()));
+        lines.add(new LangMessage("statsMojangCache", config.lang.statsMojangCache, PREMIUM_CACHE_HITS.sum(), PREMIUM_CACHE_MISSES.sum(), PREMIUM_CACHE_EVICTIONS.sum()));
+        lines.add(new LangMessage("statsDropped", config.lang.statsDropped, EasyLogger.getDropped(), AuditLog.getDropped()));
+        return lines;
+    }
+
+    /**
+     * Formats latency summary of the histogram, count and times are the first arguments, followed by extra ones.
+     */
+    private static LangMessage summary(String key, String fallback, Histogram histogram, Object... extra) {
+        Object[] args = new Object[4 + extra.length];
+        args[0] = histogram.getCount();
+        args[1] = millis(histogram.getQuantile(0.5));
+        args[2] = millis(histogram.getQuantile(0.99));
+        args[3] = millis(histogram.getMax());
+        System.arraycopy(extra, 0, args, 4, extra.length);
+        return new LangMessage(key, fallback, args);
+    }
+
+    private static String millis(long micros) {
+        return String.format(Locale.ROOT, "%.1f", micros / 1000.0);
+    }
+
+    /**
+     * Formats metrics in Prometheus text format.
+     *
+     * @return metrics in Prometheus text format
+     */
+    public static String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        gauge(out, "easyauth_unauthenticated_players", "Players online that are not authenticated.", unauthenticatedPlayers);
+        gauge(out, "easyauth_hashing_queue_size", "Password hashing tasks waiting to be run.", HASHING.getQueueSize());
+        gauge(out, "easyauth_player_cache_size", "Entries in player cache.", playerCacheSize);
+        out.append("# HELP easyauth_server_mspt Average server tick time in milliseconds.\n# TYPE easyauth_server_mspt gauge\n");
+        out.append("easyauth_server_mspt ").append(String.format(Locale.ROOT, "%.3f", mspt)).append('\n');
+        Runtime runtime = Runtime.getRuntime();
+        gauge(out, "jvm_memory_heap_used_bytes", "Used heap memory.", runtime.totalMemory() - runtime.freeMemory());
+        gauge(out, "jvm_threads", "Live platform threads.", ManagementFactory.getThreadMXBean().getThreadCount());
+        long rss = residentMemory();
+        if(rss > 0)
+            gauge(out, "process_resident_memory_bytes", "Resident memory of the process.", rss);
+
+        summaryHeader(out, "easyauth_login_seconds", "Time from /login to its result, including queueing.");
+        summary(out, "easyauth_login_seconds", "", LOGIN);
+        summaryHeader(out, "easyauth_register_seconds", "Time from /register to its result, including queueing.");
+        summary(out, "easyauth_register_seconds", "", REGISTER);
+        summaryHeader(out, "easyauth_hash_seconds", "Time of password hashing operations.");
+        summary(out, "easyauth_hash_seconds", "operation=\"verify\"", HASH_VERIFY);
+        summary(out, "easyauth_hash_seconds", "operation=\"create\"", HASH_CREATE);
+        summaryHeader(out, "easyauth_storage_seconds", "Time of storage operations.");
+        summary(out, "easyauth_storage_seconds", "backend=\"leveldb\",operation=\"read\"", LEVELDB_READ);
+        summary(out, "easyauth_storage_seconds", "backend=\"leveldb\",operation=\"write\"", LEVELDB_WRITE);
+        summary(out, "easyauth_storage_seconds", "backend=\"mongodb\",operation=\"read\"", MONGODB_READ);
+        summary(out, "easyauth_storage_seconds", "backend=\"mongodb\",operation=\"write\"", MONGODB_WRITE);
+        summary(out, "easyauth_storage_seconds", "backend=\"leveldb\",operation=\"batch_write\"", LEVELDB_BATCH_WRITE);
+        summary(out, "easyauth_storage_seconds", "backend=\"mongodb\",operation=\"batch_write\"", MONGODB_BATCH_WRITE);
+        summaryHeader(out, "easyauth_mojang_lookup_seconds", "Time of Mojang API requests.");
+        summary(out, "easyauth_mojang_lookup_seconds", "", MOJANG_LOOKUP);
+
+        counter(out, "easyauth_login_failures_total", "Logins with wrong password.", "", LOGIN_FAILURES.sum());
+        counter(out, "easyauth_mojang_lookup_failures_total", "Failed Mojang API requests.", "", MOJANG_FAILURES.sum());
+        out.append("# HELP easyauth_cache_requests_total Cache lookups.\n# TYPE easyauth_cache_requests_total counter\n");
+        counterValue(out, "easyauth_cache_requests_total", "cache=\"player\",result=\"hit\"", PLAYER_CACHE_HITS.sum());
+        counterValue(out, "easyauth_cache_requests_total", "cache=\"player\",result=\"miss\"", PLAYER_CACHE_MISSES.sum());
+        counterValue(out, "easyauth_cache_requests_total", "cache=\"mojang\",result=\"hit\"", PREMIUM_CACHE_HITS.sum());
+        counterValue(out, "easyauth_cache_requests_total", "cache=\"mojang\",result=\"miss\"", PREMIUM_CACHE_MISSES.sum());
+        counter(out, "easyauth_cache_evictions_total", "Entries evicted from Mojang account cache.", "cache=\"mojang\"", PREMIUM_CACHE_EVICTIONS.sum());
+        counter(out, "easyauth_log_dropped_total", "Log messages dropped because logging couldn't keep up.", "", EasyLogger.getDropped());
+        counter(out, "easyauth_audit_dropped_total", "Audit events dropped because audit log couldn't keep up.", "", AuditLog.getDropped());
+        return out.toString();
+    }
+
+    /**
+     * Reads resident memory of the process, on Linux only.
+     *
+     * @return resident memory in bytes, or 0 if unknown
+     */
+    private static long residentMemory() {
+        Path status = Path.of("/proc/self/status");
+        if(!Files.isReadable(status))
+            return 0;
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if(line.startsWith("VmRSS:"))
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+            }
+        } catch (IOException | NumberFormatException ignored) {
+        }
+        return 0;
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, String labels, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        counterValue(out, name, labels, value);
+    }
+
+    private static void counterValue(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        if(!labels.isEmpty())
+            out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static void summaryHeader(StringBuilder out, String name, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" summary\n");
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, Histogram histogram) {
+        String separator = labels.isEmpty() ? "" : labels + ",";
+        for (double quantile : new double[]{0.5, 0.9, 0.99}) {
+            out.append(name).append('{').append(separator).append("quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(histogram.getQuantile(quantile))).append('\n');
+        }
+        String suffixLabels = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_sum").append(suffixLabels).append(' ').append(seconds(histogram.getSum())).append('\n');
+        out.append(name).append("_count").append(suffixLabels).append(' ').append(histogram.getCount()).append('\n');
+    }
+
+    private static String seconds(long micros) {
+        return String.format(Locale.ROOT, "%.6f", micros / 1_000_000.0);
+    }
+}
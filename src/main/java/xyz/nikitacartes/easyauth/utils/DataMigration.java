@@ -0,0 +1,202 @@
+package xyz.nikitacartes.easyauth.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.WorldSavePath;
+import xyz.nikitacartes.easyauth.storage.AuthPolicy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import static xyz.nikitacartes.easyauth.EasyAuth.*;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logDebug;
+
+/**
+ * Migrates data (playerdata, stats and advancements) of premium players
+ * from offline to online UUIDs in the background, so it doesn't have to be done when they join.
+ * Names are taken from server's user cache.
+ * <p>
+ * Names are looked up at most once per {@link #LOOKUP_INTERVAL_MILLIS} ms, apart from lookups of joining players,
+ * and files of each player are moved on server thread, so migration on join can't run at the same time.
+ */
+public class DataMigration {
+    private static final long LOOKUP_INTERVAL_MILLIS = 1000;
+    // Waiting longer after a failed lookup, it was likely rate limited
+    private static final long FAILURE_BACKOFF_MILLIS = 10000;
+
+    private static final Gson gson = new Gson();
+    private static final AtomicBoolean running = new AtomicBoolean(false);
+
+    private static class UserCacheEntry {
+        private String name;
+    }
+
+    public static class Result {
+        public final int migrated;
+        /**
+         * Number of players whose account couldn't be checked with Mojang API.
+         */
+        public final int failed;
+
+        private Result(int migrated, int failed) {
+            this.migrated = migrated;
+            this.failed = failed;
+        }
+    }
+
+    /**
+     * Starts the migration. Must be called from the server thread.
+     *
+     * @param server server to migrate data for
+     * @return future completed with result of migration, or null if migration is already running
+     */
+    public static CompletableFuture<Result> migrate(MinecraftServer server) {
+        if(!config.main.premiumAutologin || config.experimental.forcedOfflineUuids)
+            return CompletableFuture.completedFuture(new Result(0, 0));
+        if(!running.compareAndSet(false, true))
+            return null;
+
+        Path[] dirs = {
+                server.getSavePath(WorldSavePath.PLAYERDATA),
+                server.getSavePath(WorldSavePath.STATS),
+                server.getSavePath(WorldSavePath.ADVANCEMENTS)
+        };
+        String[] extensions = {".dat", ".json", ".json"};
+
+        AtomicInteger migrated = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<CompletableFuture<Void>> moves = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Result> result = CompletableFuture.supplyAsync(() -> {
+            List<String> candidates = new ArrayList<>();
+            for (String name : readUserCache()) {
+                String playername = name.toLowerCase(Locale.ROOT);
+                if(!AuthPolicy.PREMIUM_NAME.matcher(playername).matches() ||
+                        policy.forcedOfflinePlayers.contains(playername) ||
+                        Boolean.FALSE.equals(mojangAccountNamesCache.get(playername)))
+                    continue;
+                // Same UUID as used by migration on join
+                String offlineUuid = PlayerEntity.getOfflinePlayerUuid(name).toString();
+                for (int i = 0; i < dirs.length; i++) {
+                    if(Files.isRegularFile(dirs[i].resolve(offlineUuid + extensions[i]))) {
+                        candidates.add(name);
+                        break;
+                    }
+                }
+            }
+            return candidates;
+        }, THREADPOOL).thenCompose(candidates -> lookup(candidates, 0, (name, onlineUuid) -> {
+            String offlineUuid = PlayerEntity.getOfflinePlayerUuid(name).toString();
+            moves.add(CompletableFuture.runAsync(() -> {
+                if(moveFiles(server, dirs, extensions, name, offlineUuid, onlineUuid))
+                    migrated.incrementAndGet();
+            }, server));
+        }, failed)).thenCompose(ignored -> CompletableFuture.allOf(moves.toArray(new CompletableFuture[0])))
+                .thenApply(ignored -> new Result(migrated.get(), failed.get()));
+        result.whenComplete((migration, e) -> running.set(false));
+        return result;
+    }
+
+    /**
+     * Looks up names one batch at a time, starting at given index.
+     *
+     * @param names names to look up
+     * @param from index of the first name of the batch
+     * @param premium called with names that have a Mojang account and their online UUIDs
+     * @param failed counter of names that couldn't be looked up
+     * @return future completed once all names are looked up
+     */
+    private static CompletableFuture<Void> lookup(List<String> names, int from, BiConsumer<String, UUID> premium, AtomicInteger failed) {
+        if(from >= names.size())
+            return CompletableFuture.completedFuture(null);
+        List<String> batch = new ArrayList<>();
+        for (String name : names.subList(from, Math.min(names.size(), from + MojangApi.BATCH_SIZE)))
+            batch.add(name.toLowerCase(Locale.ROOT));
+
+        return MojangApi.lookupInBackground(batch).handle((premiumNames, e) -> {
+            if(e != null) {
+                logDebug("Couldn't look up {} players: {}", batch.size(), e.getMessage());
+                failed.addAndGet(batch.size());
+                return FAILURE_BACKOFF_MILLIS;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                UUID onlineUuid = premiumNames.get(batch.get(i));
+                mojangAccountNamesCache.put(batch.get(i), onlineUuid != null);
+                if(onlineUuid != null)
+                    premium.accept(names.get(from + i), onlineUuid);
+            }
+            return LOOKUP_INTERVAL_MILLIS;
+        }).thenCompose(delay -> CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, THREADPOOL)))
+                .thenCompose(ignored -> lookup(names, from + batch.size(), premium, failed));
+    }
+
+    /**
+     * Reads names of players from server's user cache.
+     */
+    private static List<String> readUserCache() {
+        List<String> names = new ArrayList<>();
+        Path userCache = gameDirectory.resolve("usercache.json");
+        if(!Files.isRegularFile(userCache))
+            return names;
+        try (Reader reader = Files.newBufferedReader(userCache, StandardCharsets.UTF_8)) {
+            UserCacheEntry[] entries = gson.fromJson(reader, UserCacheEntry[].class);
+            if(entries != null) {
+                for (UserCacheEntry entry : entries) {
+                    if(entry != null && entry.name != null)
+                        names.add(entry.name);
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            throw new CompletionException(e);
+        }
+        return names;
+    }
+
+    /**
+     * Renames offline files to online ones, unless online ones already exist or player is online or joining.
+     * Must be called on server thread, where player's files are read when they join.
+     *
+     * @return true if any file was migrated
+     */
+    private static boolean moveFiles(MinecraftServer server, Path[] dirs, String[] extensions, String name, String offlineUuid, UUID onlineUuid) {
+        // Files of online players are in use
+        if(server.getPlayerManager().getPlayer(onlineUuid) != null ||
+                server.getPlayerManager().getPlayer(name) != null ||
+                PremiumDecision.isJoining(name))
+            return false;
+        // Files might have been read while player was logging in
+        PlayerDataPrefetch.invalidate(server, onlineUuid);
+
+        boolean migrated = false;
+        for (int i = 0; i < dirs.length; i++) {
+            Path offlineFile = dirs[i].resolve(offlineUuid + extensions[i]);
+            Path onlineFile = dirs[i].resolve(onlineUuid + extensions[i]);
+            if(!Files.isRegularFile(offlineFile) || Files.exists(onlineFile))
+                continue;
+            try {
+                Files.move(offlineFile, onlineFile);
+                migrated = true;
+                logDebug("Migrated {} to {}", offlineFile, onlineFile.getFileName());
+            } catch (IOException e) {
+                logError("Couldn't migrate " + offlineFile + ": " + e.getMessage());
+            }
+        }
+        return migrated;
+    }
+}
@@ -1,17 +1,162 @@
 package xyz.nikitacartes.easyauth.utils;
 
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import static xyz.nikitacartes.easyauth.EasyAuth.config;
+
+/**
+ * Logging of EasyAuth.
+ * <p>
+ * Messages are put into a bounded buffer and written by a background thread,
+ * so logging doesn't block tick and network threads on console or file output.
+ * Messages can be parameterized with {@code {}} placeholders (as in log4j), which are filled in
+ * on the logging thread, so arguments should not be changed after logging them.
+ * <p>
+ * If buffer is full, info and debug messages are dropped and counted, errors are written directly.
+ */
 public class EasyLogger {
     private static final Logger LOGGER = LogManager.getLogger();
+    private static final int BUFFER_SIZE = 8192;
+    private static final int BATCH_SIZE = 256;
+
+    private static final ArrayBlockingQueue<Message> buffer = new ArrayBlockingQueue<>(BUFFER_SIZE);
+    private static final LongAdder dropped = new LongAdder();
+    private static long reportedDropped = 0;
+
+    private static class Message {
+        private final Level level;
+        private final String format;
+        private final Object[] args;
+
+        private Message(Level level, String format, Object[] args) {
+            this.level = level;
+            this.format = format;
+            this.args = args;
+        }
+
+        private void write() {
+            if(this.args == null)
+                LOGGER.log(this.level, "[EasyAuth] " + this.format);
+            else
+                LOGGER.log(this.level, "[EasyAuth] " + this.format, this.args);
+        }
+    }
+
+    static {
+        Thread writer = new Thread(EasyLogger::write, "EasyAuth Logger");
+        writer.setDaemon(true);
+        writer.start();
+    }
 
     public static void logError(String error) {
-        LOGGER.error("[EasyAuth] " + error);
+        log(Level.ERROR, error, null);
+    }
+
+    public static void logError(String format, Object... args) {
+        log(Level.ERROR, format, args);
     }
 
     public static void logInfo(String info) {
-        LOGGER.info("[EasyAuth] " + info);
+        log(Level.INFO, info, null);
+    }
+
+    public static void logInfo(String format, Object... args) {
+        log(Level.INFO, format, args);
+    }
+
+    /**
+     * Tells whether debug messages are logged, see {@link xyz.nikitacartes.easyauth.storage.AuthConfig.ExperimentalConfig#debugMode}.
+     *
+     * @return true if debug mode is on
+     */
+    public static boolean isDebugEnabled() {
+        return config != null && config.experimental.debugMode;
     }
 
+    // Overloads without varargs, so disabled debug logging doesn't allocate
+    public static void logDebug(String debug) {
+        if(isDebugEnabled())
+            log(Level.INFO, debug, null);
+    }
+
+    public static void logDebug(String format, Object arg) {
+        if(isDebugEnabled())
+            log(Level.INFO, format, new Object[]{arg});
+    }
+
+    public static void logDebug(String format, Object arg1, Object arg2) {
+        if(isDebugEnabled())
+            log(Level.INFO, format, new Object[]{arg1, arg2});
+    }
+
+    public static void logDebug(String format, Object... args) {
+        if(isDebugEnabled())
+            log(Level.INFO, format, args);
+    }
+
+    /**
+     * Gets the number of messages dropped because buffer was full.
+     *
+     * @return number of dropped messages
+     */
+    public static long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Writes all buffered messages on the calling thread.
+     * Called on server stop, so no messages are lost.
+     */
+    public static void flush() {
+        List<Message> batch = new ArrayList<>(BATCH_SIZE);
+        while (buffer.drainTo(batch, BATCH_SIZE) > 0) {
+            for (Message message : batch)
+                message.write();
+            batch.clear();
+        }
+    }
+
+    private static void log(Level level, String format, Object[] args) {
+        Message message = new Message(level, format, args);
+        if(buffer.offer(message))
+            return;
+        if(level == Level.ERROR)
+            message.write();
+        else
+            dropped.increment();
+    }
+
+    private static void write() {
+        List<Message> batch = new ArrayList<>(BATCH_SIZE);
+        while (true) {
+            try {
+                batch.add(buffer.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            buffer.drainTo(batch, BATCH_SIZE - 1);
+            for (Message message : batch) {
+                try {
+                    message.write();
+                } catch (RuntimeException e) {
+                    // Formatting of an argument failed, logger has to keep running
+                    LOGGER.error("[EasyAuth] Couldn't log message: " + message.format, e);
+                }
+            }
+            batch.clear();
+
+            long droppedNow = dropped.sum();
+            if(droppedNow > reportedDropped) {
+                LOGGER.warn("[EasyAuth] Dropped {} log messages, as logging couldn't keep up.", droppedNow - reportedDropped);
+                reportedDropped = droppedNow;
+            }
+        }
+    }
 }
@@ -0,0 +1,191 @@
+package xyz.nikitacartes.easyauth.utils;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
+
+/**
+ * Runs password hashing work on a fixed number of threads.
+ * <p>
+ * Tasks are picked by {@link Priority priority}, each priority has its own limit of
+ * concurrently running tasks, and tasks of the same priority are taken round-robin
+ * between keys (player IPs), so a single IP can't starve the others.
+ */
+public class HashingScheduler {
+    public enum Priority {
+        /**
+         * Login of an account whose last session was from the same IP.
+         */
+        TRUSTED_LOGIN,
+        /**
+         * Other logins and password checks.
+         */
+        LOGIN,
+        /**
+         * New registrations.
+         */
+        REGISTER,
+        /**
+         * Admin commands and background rehashing.
+         */
+        ADMIN
+    }
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final Thread[] workers;
+    private final int[] limits = new int[PRIORITIES.length];
+    private final int[] running = new int[PRIORITIES.length];
+    /**
+     * How many registrations and admin tasks can run together, at least one thread is always left for logins.
+     */
+    private final int nonLoginLimit;
+    /**
+     * Pending tasks per priority, grouped by key.
+     * Keys are moved to the end after each taken task, which makes iteration order round-robin.
+     */
+    @SuppressWarnings("unchecked")
+    private final LinkedHashMap<String, ArrayDeque<Runnable>>[] queues = new LinkedHashMap[PRIORITIES.length];
+    private int queueSize = 0;
+    private boolean shutdown = false;
+
+    /**
+     * Creates the scheduler and starts its threads.
+     *
+     * @param threads number of hashing threads, at least 2 are started so one is reserved for logins
+     */
+    public HashingScheduler(int threads) {
+        threads = Math.max(2, threads);
+        for (Priority priority : PRIORITIES)
+            this.queues[priority.ordinal()] = new LinkedHashMap<>();
+
+        this.limits[Priority.TRUSTED_LOGIN.ordinal()] = threads;
+        this.limits[Priority.LOGIN.ordinal()] = threads;
+        this.limits[Priority.REGISTER.ordinal()] = Math.max(1, threads / 2);
+        this.limits[Priority.ADMIN.ordinal()] = 1;
+        this.nonLoginLimit = threads - 1;
+
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            this.workers[i] = new Thread(this::work, "EasyAuth Hashing #" + i);
+            this.workers[i].setDaemon(true);
+            this.workers[i].start();
+        }
+    }
+
+    /**
+     * Schedules the hashing task.
+     *
+     * @param priority priority of the task
+     * @param key key to share the work fairly between, e.g. player's IP
+     * @param task task to run
+     */
+    public synchronized void submit(Priority priority, String key, Runnable task) {
+        if(this.shutdown)
+            return;
+        this.queues[priority.ordinal()].computeIfAbsent(key, k -> new ArrayDeque<>()).add(task);
+        this.queueSize++;
+        this.notifyAll();
+    }
+
+    /**
+     * Gets the number of tasks waiting to be run.
+     *
+     * @return number of queued tasks
+     */
+    public synchronized int getQueueSize() {
+        return this.queueSize;
+    }
+
+    /**
+     * Drops pending tasks and stops the threads.
+     *
+     * @param timeoutMillis how long to wait for running tasks
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void shutdown(long timeoutMillis) throws InterruptedException {
+        synchronized (this) {
+            this.shutdown = true;
+            for (Map<String, ArrayDeque<Runnable>> queue : this.queues)
+                queue.clear();
+            this.queueSize = 0;
+            this.notifyAll();
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Thread worker : this.workers) {
+            worker.interrupt();
+            worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+    }
+
+    private void work() {
+        while (true) {
+            Priority priority;
+            Runnable task;
+            synchronized (this) {
+                Priority next;
+                while ((next = this.nextPriority()) == null) {
+                    if(this.shutdown)
+                        return;
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        if(this.shutdown)
+                            return;
+                    }
+                }
+                priority = next;
+                task = this.poll(priority);
+                this.running[priority.ordinal()]++;
+            }
+            try {
+                task.run();
+            } catch (Throwable e) {
+                logError("Error while hashing: " + e);
+            } finally {
+                synchronized (this) {
+                    this.running[priority.ordinal()]--;
+                    // Freed limit might allow other waiting tasks to run
+                    this.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the highest priority that has queued tasks and is under its limit.
+     */
+    private Priority nextPriority() {
+        if(this.shutdown)
+            return null;
+        int nonLoginRunning = this.running[Priority.REGISTER.ordinal()] + this.running[Priority.ADMIN.ordinal()];
+        for (Priority priority : PRIORITIES) {
+            int i = priority.ordinal();
+            if(this.queues[i].isEmpty() || this.running[i] >= this.limits[i])
+                continue;
+            if(priority.compareTo(Priority.REGISTER) >= 0 && nonLoginRunning >= this.nonLoginLimit)
+                return null;
+            return priority;
+        }
+        return null;
+    }
+
+    /**
+     * Takes a task from the first key and moves that key to the end.
+     */
+    private Runnable poll(Priority priority) {
+        LinkedHashMap<String, ArrayDeque<Runnable>> queue = this.queues[priority.ordinal()];
+        Iterator<Map.Entry<String, ArrayDeque<Runnable>>> iterator = queue.entrySet().iterator();
+        Map.Entry<String, ArrayDeque<Runnable>> entry = iterator.next();
+        ArrayDeque<Runnable> tasks = entry.getValue();
+        Runnable task = tasks.poll();
+        iterator.remove();
+        if(!tasks.isEmpty())
+            queue.put(entry.getKey(), tasks);
+        this.queueSize--;
+        return task;
+    }
+}
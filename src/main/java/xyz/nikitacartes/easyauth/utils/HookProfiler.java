@@ -0,0 +1,157 @@
+package xyz.nikitacartes.easyauth.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static xyz.nikitacartes.easyauth.EasyAuth.config;
+
+/**
+ * Optional accounting of time spent in EasyAuth's hooks (mixin injections and Fabric callbacks).
+ * <p>
+ * When disabled, each hook only reads a static field.
+ * When enabled, calls, total and max time, and allocated bytes (if JVM supports measuring them) are counted per hook.
+ * Controlled with {@code /auth profile}.
+ */
+public class HookProfiler {
+    public enum Hook {
+        PLAYER_TICK("playerTick"),
+        PLAYER_MOVE("onPlayerMove"),
+        PLAYER_ACTION("onPlayerAction"),
+        CHAT("handleMessage"),
+        SLOT_TAKE_ITEMS("Slot.canTakeItems"),
+        CREATIVE_INVENTORY("onCreativeInventoryAction"),
+        DROP_ITEM("dropSelectedItem"),
+        BREAK_BLOCK("PlayerBlockBreakEvents"),
+        USE_BLOCK("UseBlockCallback"),
+        USE_ITEM("UseItemCallback"),
+        ATTACK_ENTITY("AttackEntityCallback"),
+        USE_ENTITY("UseEntityCallback");
+
+        private final String displayName;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder allocated = new LongAdder();
+
+        Hook(String displayName) {
+            this.displayName = displayName;
+        }
+
+        private void reset() {
+            this.calls.reset();
+            this.nanos.reset();
+            this.maxNanos.reset();
+            this.allocated.reset();
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = getThreadBean();
+    /**
+     * Allocated bytes of the thread when its hook started, hooks don't nest.
+     */
+    private static final ThreadLocal<long[]> allocationStart = ThreadLocal.withInitial(() -> new long[1]);
+
+    private static volatile boolean enabled = false;
+    private static long startedAt;
+    private static int startedAtTick;
+
+    /**
+     * Starts measuring a hook.
+     *
+     * @return start time to pass to {@link #end(Hook, long)}, 0 if profiler is disabled
+     */
+    public static long start() {
+        if(!enabled)
+            return 0;
+        if(THREAD_BEAN != null)
+            allocationStart.get()[0] = THREAD_BEAN.getCurrentThreadAllocatedBytes();
+        return System.nanoTime();
+    }
+
+    /**
+     * Finishes measuring a hook.
+     *
+     * @param hook hook that was measured
+     * @param start value returned by {@link #start()}
+     */
+    public static void end(Hook hook, long start) {
+        if(start == 0)
+            return;
+        long nanos = System.nanoTime() - start;
+        hook.calls.increment();
+        hook.nanos.add(nanos);
+        hook.maxNanos.accumulate(nanos);
+        if(THREAD_BEAN != null)
+            hook.allocated.add(Math.max(0, THREAD_BEAN.getCurrentThreadAllocatedBytes() - allocationStart.get()[0]));
+    }
+
+    /**
+     * Resets counters and starts profiling.
+     *
+     * @param tick current server tick
+     */
+    public static void enable(int tick) {
+        for (Hook hook : Hook.values())
+            hook.reset();
+        startedAt = System.nanoTime();
+        startedAtTick = tick;
+        enabled = true;
+    }
+
+    /**
+     * Stops profiling, counters are kept until it's started again.
+     */
+    public static void disable() {
+        enabled = false;
+    }
+
+    /**
+     * Formats results for {@code /auth profile}.
+     *
+     * @param tick current server tick
+     * @return human readable report, one message per line
+     */
+    public static List<LangMessage> report(int tick) {
+        int ticks = Math.max(1, tick - startedAtTick);
+        List<LangMessage> report = new ArrayList<>();
+        String seconds = String.format(Locale.ROOT, "%.1f", (System.nanoTime() - startedAt) / 1e9);
+        if(enabled)
+            report.add(new LangMessage("profileRunning", config.lang.profileRunning, ticks, seconds));
+        else
+            report.add(new LangMessage("profileFinished", config.lang.profileFinished, ticks, seconds));
+        long totalNanos = 0;
+        for (Hook hook : Hook.values()) {
+            long calls = hook.calls.sum();
+            if(calls == 0)
+                continue;
+            long nanos = hook.nanos.sum();
+            totalNanos += nanos;
+            String perTick = String.format(Locale.ROOT, "%.3f", nanos / 1e6 / ticks);
+            String max = String.format(Locale.ROOT, "%.1f", hook.maxNanos.get() / 1e3);
+            if(THREAD_BEAN != null)
+                report.add(new LangMessage("profileHookAllocated", config.lang.profileHookAllocated,
+                        hook.displayName, calls, perTick, nanos / calls, max, hook.allocated.sum() / calls));
+            else
+                report.add(new LangMessage("profileHook", config.lang.profileHook,
+                        hook.displayName, calls, perTick, nanos / calls, max));
+        }
+        report.add(new LangMessage("profileTotal", config.lang.profileTotal, String.format(Locale.ROOT, "%.3f", totalNanos / 1e6 / ticks)));
+        return report;
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        try {
+            if(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemorySupported()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+                return bean;
+            }
+        } catch (LinkageError | UnsupportedOperationException ignored) {
+            // Not a HotSpot based JVM
+        }
+        return null;
+    }
+}
@@ -0,0 +1,56 @@
+package xyz.nikitacartes.easyauth.utils;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.TranslatableText;
+
+import java.util.List;
+
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logInfo;
+
+/**
+ * Message with arguments, shown to players translated from the lang file
+ * and to console using text from {@link xyz.nikitacartes.easyauth.storage.AuthConfig.LangConfig}.
+ * Used by reports of admin commands, which consist of multiple lines.
+ */
+public class LangMessage {
+    private final String key;
+    private final String fallback;
+    private final Object[] args;
+
+    /**
+     * @param key key of the message, without the {@code text.easyauth.} prefix
+     * @param fallback text of the message from {@link xyz.nikitacartes.easyauth.storage.AuthConfig.LangConfig}
+     * @param args arguments of the message
+     */
+    public LangMessage(String key, String fallback, Object... args) {
+        this.key = key;
+        this.fallback = fallback;
+        this.args = args;
+    }
+
+    public TranslatableText toText() {
+        return new TranslatableText("text.easyauth." + this.key, this.args);
+    }
+
+    public String format() {
+        return String.format(this.fallback, this.args);
+    }
+
+    /**
+     * Sends messages to the player who ran the command, or logs them if it was run from console.
+     *
+     * @param source executioner of the command
+     * @param messages messages to send, each on its own line
+     */
+    public static void send(ServerCommandSource source, List<LangMessage> messages) {
+        Entity sender = source.getEntity();
+        for (LangMessage message : messages) {
+            if(sender != null)
+                ((PlayerEntity) sender).sendMessage(message.toText(), false);
+            else
+                logInfo(message.format());
+        }
+    }
+}
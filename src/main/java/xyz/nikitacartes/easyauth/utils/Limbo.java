@@ -0,0 +1,162 @@
+package xyz.nikitacartes.easyauth.utils;
+
+import com.mojang.serialization.Dynamic;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.effect.StatusEffectInstance;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtOps;
+import net.minecraft.network.packet.s2c.play.EntityStatusEffectS2CPacket;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.World;
+import net.minecraft.world.dimension.DimensionType;
+import xyz.nikitacartes.easyauth.storage.PlayerCache;
+
+import java.net.SocketAddress;
+import java.util.UUID;
+
+import static xyz.nikitacartes.easyauth.EasyAuth.config;
+import static xyz.nikitacartes.easyauth.EasyAuth.playerCacheMap;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logDebug;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
+
+/**
+ * Empty dimension where players wait until they authenticate.
+ * <p>
+ * Players that have to authenticate join this dimension instead of the one they left in,
+ * without their player data being loaded. All of them stand in the same spot,
+ * so they share a few empty chunks and don't load any chunks of the real worlds.
+ * Their data is loaded and they are moved to their world only after logging in.
+ * <p>
+ * Dimension comes from mod's data pack, see {@code data/easyauth/dimension/limbo.json}.
+ */
+public class Limbo {
+    public static final RegistryKey<World> WORLD = RegistryKey.of(Registry.WORLD_KEY, new Identifier("easyauth", "limbo"));
+
+    // Players stand on the barrier floor of the dimension
+    private static final double X = 0.5;
+    private static final double Y = 1;
+    private static final double Z = 0.5;
+
+    private static boolean reportedMissing = false;
+
+    /**
+     * Gets the limbo world.
+     *
+     * @param server server to get the world from
+     * @return limbo world, or null if its data pack is disabled
+     */
+    public static ServerWorld getWorld(MinecraftServer server) {
+        ServerWorld world = server.getWorld(WORLD);
+        if(world == null && !reportedMissing) {
+            reportedMissing = true;
+            logError("Limbo dimension {} is missing, is EasyAuth data pack disabled? Players will join the world directly.", WORLD.getValue());
+        }
+        return world;
+    }
+
+    /**
+     * Checks whether the player that is connecting should wait in limbo.
+     * Players that can skip authentication or have a valid session join the world directly.
+     *
+     * @param player player that is connecting
+     * @param address address of the connection, as player doesn't have the network handler yet
+     * @return true if player should be held in limbo
+     */
+    public static boolean shouldHold(ServerPlayerEntity player, SocketAddress address) {
+        if(!config.experimental.useLimbo || ((PlayerAuth) player).canSkipAuth() || getWorld(player.server) == null)
+            return false;
+        // Cache of players that haven't joined since restart is only loaded afterwards,
+        // they are let out right away if they have a valid session
+        PlayerCache cache = playerCacheMap.get(((PlayerAuth) player).getFakeUuid());
+        return cache == null || !cache.isAuthenticated || cache.validUntil < System.currentTimeMillis() || !getIp(address).equals(cache.lastIp);
+    }
+
+    /**
+     * Moves the player to limbo spawn.
+     * Has to be called before player is added to the world.
+     *
+     * @param player player to move
+     */
+    public static void enter(ServerPlayerEntity player) {
+        logDebug("Holding {} in limbo.", player.getGameProfile().getName());
+        player.refreshPositionAndAngles(X, Y, Z, player.getYaw(), player.getPitch());
+    }
+
+    /**
+     * Loads player's data and moves them from limbo to the world they left in.
+     * Does the same as {@link net.minecraft.server.PlayerManager#onPlayerConnect} does with the data.
+     *
+     * @param player player to move
+     * @param spawn position where player would spawn if they have no data yet
+     */
+    public static void leave(ServerPlayerEntity player, Vec3d spawn) {
+        logDebug("Letting {} out of limbo.", player.getGameProfile().getName());
+        MinecraftServer server = player.server;
+        NbtCompound data = server.getPlayerManager().loadPlayerData(player);
+        player.setGameMode(data);
+
+        ServerWorld world = null;
+        if(data != null) {
+            RegistryKey<World> worldKey = DimensionType.worldFromDimensionNbt(new Dynamic<NbtElement>(NbtOps.INSTANCE, data.get("Dimension")))
+                    .resultOrPartial(EasyLogger::logError)
+                    .orElse(World.OVERWORLD);
+            world = server.getWorld(worldKey);
+        }
+        else if(spawn != null)
+            player.refreshPositionAndAngles(spawn.getX(), spawn.getY(), spawn.getZ(), player.getYaw(), player.getPitch());
+        if(world == null)
+            world = server.getOverworld();
+
+        player.teleport(world, player.getX(), player.getY(), player.getZ(), player.getYaw(), player.getPitch());
+        player.sendAbilitiesUpdate();
+        player.getRecipeBook().sendInitRecipesPacket(player);
+        for(StatusEffectInstance effect : player.getStatusEffects())
+            player.networkHandler.sendPacket(new EntityStatusEffectS2CPacket(player.getId(), effect));
+
+        if(data != null && data.contains("RootVehicle", NbtElement.COMPOUND_TYPE))
+            mountVehicle(player, world, data.getCompound("RootVehicle"));
+    }
+
+    /**
+     * Spawns the vehicle that player was riding when they left.
+     */
+    private static void mountVehicle(ServerPlayerEntity player, ServerWorld world, NbtCompound rootVehicle) {
+        Entity vehicle = EntityType.loadEntityWithPassengers(rootVehicle.getCompound("Entity"), world, entity -> world.tryLoadEntity(entity) ? entity : null);
+        if(vehicle == null)
+            return;
+        UUID attach = rootVehicle.containsUuid("Attach") ? rootVehicle.getUuid("Attach") : null;
+        if(vehicle.getUuid().equals(attach))
+            player.startRiding(vehicle, true);
+        else {
+            for(Entity passenger : vehicle.getPassengersDeep()) {
+                if(passenger.getUuid().equals(attach)) {
+                    player.startRiding(passenger, true);
+                    break;
+                }
+            }
+        }
+        if(!player.hasVehicle()) {
+            logError("Couldn't reattach entity to player {}", player.getGameProfile().getName());
+            vehicle.discard();
+            for(Entity passenger : vehicle.getPassengersDeep())
+                passenger.discard();
+        }
+    }
+
+    /**
+     * Gets the IP the same way as {@link ServerPlayerEntity#getIp()}, which is what sessions store.
+     */
+    private static String getIp(SocketAddress address) {
+        String ip = address.toString();
+        ip = ip.substring(ip.indexOf("/") + 1);
+        return ip.substring(0, ip.indexOf(":"));
+    }
+}
@@ -0,0 +1,315 @@
+package xyz.nikitacartes.easyauth.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static xyz.nikitacartes.easyauth.EasyAuth.THREADPOOL;
+import static xyz.nikitacartes.easyauth.EasyAuth.config;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logInfo;
+
+/**
+ * Non-blocking client for Mojang API.
+ * <p>
+ * Lookups of the same name share a single request, and names requested in a short time window
+ * are sent together to the bulk profiles endpoint. Connections are kept alive and reused,
+ * and at most {@link xyz.nikitacartes.easyauth.storage.AuthConfig.ExperimentalConfig#mojangApiMaxRequests}
+ * requests are running at once, the rest wait in a queue, where login lookups go before
+ * {@link #lookupInBackground(List) background} ones.
+ * <p>
+ * After {@link #BREAKER_THRESHOLD} failed requests in a row, lookups fail immediately
+ * for {@link #BREAKER_COOLDOWN_MILLIS} ms, after which a single lookup is let through to check whether API works again.
+ */
+public class MojangApi {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    /**
+     * Maximum number of names the bulk endpoint accepts.
+     */
+    public static final int BATCH_SIZE = 10;
+    private static final long BATCH_DELAY_MILLIS = 50;
+    private static final int BREAKER_THRESHOLD = 5;
+    private static final long BREAKER_COOLDOWN_MILLIS = 30000;
+
+    private static final Gson gson = new Gson();
+
+    private static final ConcurrentHashMap<String, CompletableFuture<UUID>> lookups = new ConcurrentHashMap<>();
+    private static final ArrayList<String> batch = new ArrayList<>();
+
+    // Requests waiting for a free slot, login lookups are always sent before background ones
+    private static final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+    private static final ArrayDeque<Runnable> waitingBackground = new ArrayDeque<>();
+    private static int running = 0;
+
+    // Circuit breaker state, guarded by MojangApi.class
+    private static int failures = 0;
+    private static long openUntil = 0;
+    private static boolean trialRunning = false;
+
+    private static class Holder {
+        private static final HttpClient CLIENT = HttpClient.newBuilder()
+                .connectTimeout(TIMEOUT)
+                .executor(THREADPOOL)
+                .build();
+    }
+
+    private static class Profile {
+        private String id;
+        private String name;
+    }
+
+    /**
+     * Checks whether the name belongs to a Mojang account.
+     *
+     * @param playername lower case name of the player
+     * @return future completed with true if player has a Mojang account, false if not,
+     * or completed exceptionally if API couldn't be reached or returned an unexpected response
+     */
+    public static CompletableFuture<Boolean> hasMojangAccount(String playername) {
+        return getOnlineUuid(playername).thenApply(Objects::nonNull);
+    }
+
+    /**
+     * Gets UUID of the Mojang account with given name.
+     *
+     * @param playername lower case name of the player
+     * @return future completed with UUID of the account, null if there's no such account,
+     * or completed exceptionally if API couldn't be reached or returned an unexpected response
+     */
+    public static CompletableFuture<UUID> getOnlineUuid(String playername) {
+        CompletableFuture<UUID> result = new CompletableFuture<>();
+        CompletableFuture<UUID> existing = lookups.putIfAbsent(playername, result);
+        if(existing != null)
+            return existing;
+        result.whenComplete((uuid, e) -> lookups.remove(playername, result));
+
+        if(!allowRequest()) {
+            result.completeExceptionally(new IOException("Mojang API is unavailable, skipping lookup"));
+            return result;
+        }
+
+        boolean flushNow;
+        boolean scheduleFlush;
+        synchronized (batch) {
+            batch.add(playername);
+            flushNow = batch.size() >= BATCH_SIZE;
+            scheduleFlush = batch.size() == 1;
+        }
+        if(flushNow)
+            flush();
+        else if(scheduleFlush)
+            CompletableFuture.delayedExecutor(BATCH_DELAY_MILLIS, TimeUnit.MILLISECONDS, THREADPOOL).execute(MojangApi::flush);
+        return result;
+    }
+
+    /**
+     * Sends all waiting names.
+     */
+    private static void flush() {
+        List<String> names;
+        synchronized (batch) {
+            if(batch.isEmpty())
+                return;
+            names = new ArrayList<>(batch);
+            batch.clear();
+        }
+        for (int i = 0; i < names.size(); i += BATCH_SIZE) {
+            List<String> part = names.subList(i, Math.min(names.size(), i + BATCH_SIZE));
+            runLimited(() -> sendBatch(part), false);
+        }
+    }
+
+    private static void sendBatch(List<String> names) {
+        send(names).whenComplete((premiumNames, e) -> {
+            release();
+            if(e != null) {
+                fail(names, unwrap(e));
+                return;
+            }
+            recordSuccess();
+            for (String playername : names)
+                complete(playername, premiumNames.get(playername), null);
+        });
+    }
+
+    /**
+     * Looks up names for background jobs, like data migration.
+     * <p>
+     * Unlike {@link #getOnlineUuid(String)}, names are sent right away as a single request,
+     * which waits until queued login lookups are sent, and its result doesn't affect the circuit breaker,
+     * so a bulk job can't delay or stop lookups of joining players. Callers must limit the rate themselves.
+     *
+     * @param names lower case names, at most {@link #BATCH_SIZE}
+     * @return future completed with UUIDs of names that have a Mojang account, names without one are left out,
+     * or completed exceptionally if API couldn't be reached or returned an unexpected response
+     */
+    public static CompletableFuture<Map<String, UUID>> lookupInBackground(List<String> names) {
+        CompletableFuture<Map<String, UUID>> result = new CompletableFuture<>();
+        runLimited(() -> send(names).whenComplete((premiumNames, e) -> {
+            release();
+            if(e != null)
+                result.completeExceptionally(unwrap(e));
+            else
+                result.complete(premiumNames);
+        }), true);
+        return result;
+    }
+
+    /**
+     * Sends names to the bulk profiles endpoint.
+     * Never throws, so callers always get to release their slot.
+     *
+     * @return future completed with UUIDs of names that have a Mojang account
+     */
+    private static CompletableFuture<Map<String, UUID>> send(List<String> names) {
+        CompletableFuture<HttpResponse<String>> pending;
+        long start = System.nanoTime();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(config.experimental.mojangApiUrl + "/profiles/minecraft"))
+                    .timeout(TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(names)))
+                    .build();
+            // Client can also throw right away, e.g. when its executor rejects the task
+            pending = Holder.CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return pending.thenApply(response -> {
+            AuthMetrics.MOJANG_LOOKUP.recordSince(start);
+            if(response.statusCode() != HttpURLConnection.HTTP_OK)
+                throw new CompletionException(new IOException("Unexpected response code " + response.statusCode() + " from Mojang API"));
+
+            // Names without account are left out of the response
+            Map<String, UUID> premiumNames = new HashMap<>();
+            Profile[] profiles = gson.fromJson(response.body(), Profile[].class);
+            if(profiles != null) {
+                for (Profile profile : profiles) {
+                    if(profile != null && profile.name != null && profile.id != null && profile.id.length() == 32)
+                        premiumNames.put(profile.name.toLowerCase(Locale.ROOT), parseUuid(profile.id));
+                }
+            }
+            return premiumNames;
+        });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if(error instanceof CompletionException && error.getCause() != null)
+            error = error.getCause();
+        if(error instanceof JsonParseException)
+            error = new IOException("Invalid response from Mojang API", error);
+        return error;
+    }
+
+    private static void fail(List<String> names, Throwable error) {
+        AuthMetrics.MOJANG_FAILURES.increment();
+        recordFailure(error);
+        for (String playername : names)
+            complete(playername, null, error);
+    }
+
+    private static void complete(String playername, UUID uuid, Throwable error) {
+        CompletableFuture<UUID> result = lookups.get(playername);
+        if(result == null)
+            return;
+        if(error != null)
+            result.completeExceptionally(error);
+        else
+            result.complete(uuid);
+    }
+
+    /**
+     * Parses UUID in the format used by Mojang API (without dashes).
+     */
+    private static UUID parseUuid(String id) {
+        return new UUID(Long.parseUnsignedLong(id.substring(0, 16), 16), Long.parseUnsignedLong(id.substring(16), 16));
+    }
+
+    /**
+     * Checks whether the circuit breaker lets the request through.
+     */
+    private static synchronized boolean allowRequest() {
+        if(failures < BREAKER_THRESHOLD)
+            return true;
+        if(System.currentTimeMillis() < openUntil || trialRunning)
+            return false;
+        // Letting a single request through, to check whether API works again
+        trialRunning = true;
+        return true;
+    }
+
+    private static synchronized void recordSuccess() {
+        if(failures >= BREAKER_THRESHOLD)
+            logInfo("Mojang API is reachable again.");
+        failures = 0;
+        trialRunning = false;
+    }
+
+    /**
+     * Counts the failed request. Errors are only logged until the breaker opens,
+     * so an outage doesn't log an error for every joining player.
+     */
+    private static synchronized void recordFailure(Throwable error) {
+        failures++;
+        trialRunning = false;
+        if(failures < BREAKER_THRESHOLD) {
+            logError("Mojang API request failed: " + error.getMessage());
+            return;
+        }
+        if(failures == BREAKER_THRESHOLD)
+            logError("Mojang API keeps failing (" + error.getMessage() + "), skipping lookups for " + BREAKER_COOLDOWN_MILLIS / 1000 + " seconds.");
+        openUntil = System.currentTimeMillis() + BREAKER_COOLDOWN_MILLIS;
+    }
+
+    /**
+     * Runs the request now if limit allows it, otherwise queues it.
+     *
+     * @param background whether request is sent for a background job, which lets login lookups go first
+     */
+    private static void runLimited(Runnable request, boolean background) {
+        synchronized (waiting) {
+            if(running >= Math.max(1, config.experimental.mojangApiMaxRequests)) {
+                (background ? waitingBackground : waiting).add(request);
+                return;
+            }
+            running++;
+        }
+        request.run();
+    }
+
+    /**
+     * Starts next queued request, if there is one.
+     */
+    private static void release() {
+        Runnable next;
+        synchronized (waiting) {
+            next = waiting.poll();
+            if(next == null)
+                next = waitingBackground.poll();
+            if(next == null) {
+                running--;
+                return;
+            }
+        }
+        next.run();
+    }
+}
@@ -42,6 +42,20 @@ public interface PlayerAuth {
      */
     boolean isAuthenticated();
 
+    /**
+     * Checks whether player is waiting in {@link Limbo limbo}.
+     * Data of such player isn't loaded yet, so it mustn't be saved.
+     *
+     * @return true if player is in limbo, otherwise false
+     */
+    boolean isInLimbo();
+
+    /**
+     * Holds the connecting player in {@link Limbo limbo} until they authenticate.
+     * Must be called before player is added to the world.
+     */
+    void holdInLimbo();
+
     /**
      * Gets the text which tells the player
      * to login or register, depending on account status.
@@ -51,6 +65,14 @@ public interface PlayerAuth {
      */
     Text getAuthMessage();
 
+    /**
+     * Sends the {@link #getAuthMessage() auth message} to the player,
+     * if it wasn't sent too recently.
+     *
+     * @see <a href="https://samolego.github.io/SimpleAuth/org/samo_lego/simpleauth/mixin/MixinPlayerEntity.html">See implementation</a>
+     */
+    void sendAuthMessage();
+
     /**
      * Checks whether player is a fake player (from CarpetMod).
      *
@@ -0,0 +1,174 @@
+package xyz.nikitacartes.easyauth.utils;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.WorldSavePath;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static xyz.nikitacartes.easyauth.EasyAuth.THREADPOOL;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logDebug;
+
+/**
+ * Reads player's files (playerdata, stats and advancements) in the background while they are logging in,
+ * so joining doesn't have to wait for the disk on the server thread.
+ * <p>
+ * Prefetched data is used only once, and is dropped when the player's data is saved
+ * or if player doesn't join in {@link #EXPIRE_SECONDS} seconds. Data that hasn't been read by the time
+ * player joins is read as usual. At most {@link #MAX_FILES} files are kept, further prefetches are skipped.
+ */
+public class PlayerDataPrefetch {
+    private static final long EXPIRE_SECONDS = 60;
+    private static final int MAX_FILES = 256;
+
+    private static final ConcurrentHashMap<File, CompletableFuture<?>> prefetched = new ConcurrentHashMap<>();
+
+    /**
+     * Starts reading files of the player.
+     *
+     * @param server server the player is joining
+     * @param uuid UUID the player will have in game
+     */
+    public static void prefetch(MinecraftServer server, UUID uuid) {
+        File playerData = getPlayerDataFile(server, uuid);
+        File stats = new File(server.getSavePath(WorldSavePath.STATS).toFile(), uuid + ".json");
+        File advancements = new File(server.getSavePath(WorldSavePath.ADVANCEMENTS).toFile(), uuid + ".json");
+
+        start(playerData, () -> {
+            try {
+                return NbtIo.readCompressed(playerData);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        start(stats, () -> readText(stats));
+        start(advancements, () -> readText(advancements));
+        logDebug("Prefetching data of {}", uuid);
+    }
+
+    /**
+     * Starts reading offline-UUID player data of a premium player,
+     * which is migrated on join if they don't have online one yet.
+     *
+     * @param server server the player is joining
+     * @param offlineUuid offline UUID of the player
+     * @param onlineUuid UUID the player will have in game
+     */
+    public static void prefetchOffline(MinecraftServer server, UUID offlineUuid, UUID onlineUuid) {
+        File offlineData = getPlayerDataFile(server, offlineUuid);
+        File onlineData = getPlayerDataFile(server, onlineUuid);
+        start(offlineData, () -> {
+            // Already migrated
+            if(onlineData.isFile())
+                return null;
+            try {
+                return NbtIo.readCompressed(offlineData);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Drops prefetched data of the player, as it's outdated.
+     *
+     * @param server server the player is on
+     * @param uuid UUID of the player
+     */
+    public static void invalidate(MinecraftServer server, UUID uuid) {
+        if(prefetched.isEmpty())
+            return;
+        prefetched.remove(getPlayerDataFile(server, uuid).getAbsoluteFile());
+        prefetched.remove(new File(server.getSavePath(WorldSavePath.STATS).toFile(), uuid + ".json").getAbsoluteFile());
+        prefetched.remove(new File(server.getSavePath(WorldSavePath.ADVANCEMENTS).toFile(), uuid + ".json").getAbsoluteFile());
+    }
+
+    /**
+     * Reads compressed NBT file, using prefetched data if there is any.
+     *
+     * @param file file to read
+     * @return NBT compound from the file
+     * @throws IOException if file couldn't be read
+     */
+    public static NbtCompound readNbt(File file) throws IOException {
+        Object data = take(file);
+        return data instanceof NbtCompound ? (NbtCompound) data : NbtIo.readCompressed(file);
+    }
+
+    /**
+     * Reads text file, using prefetched data if there is any.
+     *
+     * @param file file to read
+     * @return content of the file
+     * @throws IOException if file couldn't be read
+     */
+    public static String readString(File file) throws IOException {
+        Object data = take(file);
+        return data instanceof String ? (String) data : Files.readString(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    private static File getPlayerDataFile(MinecraftServer server, UUID uuid) {
+        return new File(server.getSavePath(WorldSavePath.PLAYERDATA).toFile(), uuid + ".dat");
+    }
+
+    private static void start(File file, Supplier<Object> reader) {
+        // Size is only an estimate, which is enough for a limit
+        if(prefetched.size() >= MAX_FILES) {
+            logDebug("Not prefetching {}, too many files are prefetched already", file);
+            return;
+        }
+        CompletableFuture<Object> future = CompletableFuture.supplyAsync(() -> {
+            // Missing files are handled by vanilla
+            if(!file.isFile())
+                return null;
+            return reader.get();
+        }, THREADPOOL);
+        prefetched.put(file.getAbsoluteFile(), future);
+        CompletableFuture.delayedExecutor(EXPIRE_SECONDS, TimeUnit.SECONDS, THREADPOOL).execute(() -> prefetched.remove(file.getAbsoluteFile(), future));
+    }
+
+    /**
+     * Takes prefetched data of the file, if it has already been read.
+     * Unfinished reads aren't waited for, as they might be queued behind other work on the thread pool,
+     * reading the file directly is faster.
+     *
+     * @return prefetched data or null if there's none
+     * @throws IOException if prefetching failed
+     */
+    private static Object take(File file) throws IOException {
+        if(prefetched.isEmpty())
+            return null;
+        CompletableFuture<?> future = prefetched.remove(file.getAbsoluteFile());
+        if(future == null || !future.isDone())
+            return null;
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof UncheckedIOException)
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static String readText(File file) {
+        try {
+            return Files.readString(file.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package xyz.nikitacartes.easyauth.utils;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Passes the premium decision made while logging in to the player entity that is being created.
+ * <p>
+ * The entity needs it already in its constructor (stats migration), so it can't be set afterwards,
+ * and it can't be taken from {@link xyz.nikitacartes.easyauth.storage.PremiumCache}, which might not keep it.
+ * Decision for the entity is only used on server thread.
+ * <p>
+ * Also keeps track of premium players that are logging in, whose files {@link DataMigration} must leave alone.
+ */
+public class PremiumDecision {
+    private static String playername;
+    private static boolean premium;
+
+    // Lower case names of players let in as premium, until they join or disconnect
+    private static final Set<String> joining = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Sets the decision for the entity that is about to be created.
+     *
+     * @param playername name of the player
+     * @param premium whether player was let in with a Mojang account
+     */
+    public static void begin(String playername, boolean premium) {
+        PremiumDecision.playername = playername;
+        PremiumDecision.premium = premium;
+    }
+
+    /**
+     * Gets the decision for the player being created.
+     *
+     * @param playername name of the player
+     * @return true if player was let in with a Mojang account, false if not, null if no decision was made for them
+     */
+    public static Boolean get(String playername) {
+        if(!playername.equals(PremiumDecision.playername))
+            return null;
+        return premium;
+    }
+
+    /**
+     * Clears the decision once the entity is created.
+     */
+    public static void end() {
+        playername = null;
+    }
+
+    /**
+     * Marks player as logging in with a Mojang account.
+     *
+     * @param playername name of the player
+     */
+    public static void startJoining(String playername) {
+        joining.add(playername.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Marks player as no longer logging in, as they have joined or disconnected.
+     *
+     * @param playername name of the player
+     */
+    public static void finishJoining(String playername) {
+        joining.remove(playername.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Checks whether player is logging in with a Mojang account.
+     *
+     * @param playername name of the player
+     * @return true if player was let in as premium, but hasn't joined yet
+     */
+    public static boolean isJoining(String playername) {
+        return joining.contains(playername.toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,135 @@
+package xyz.nikitacartes.easyauth.utils;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.packet.s2c.play.CustomPayloadS2CPacket;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.TranslatableText;
+import net.minecraft.util.Identifier;
+import xyz.nikitacartes.easyauth.storage.PlayerCache;
+
+import java.security.MessageDigest;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static xyz.nikitacartes.easyauth.EasyAuth.config;
+import static xyz.nikitacartes.easyauth.EasyAuth.playerCacheMap;
+import static xyz.nikitacartes.easyauth.EasyAuth.policy;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logDebug;
+
+/**
+ * Lets players who have already authenticated on a proxy (Velocity) network skip authentication on this server.
+ * <p>
+ * When a player joins, a challenge is sent on {@link #CHANNEL}, which proxy plugin answers with a signed assertion
+ * if the player is authenticated on the network, see {@link ProxyMessage}.
+ * Password logins and logouts are sent to proxy, so it knows who is authenticated.
+ * Enabled by setting {@link xyz.nikitacartes.easyauth.storage.AuthConfig.ExperimentalConfig#proxySecret}
+ * to at least {@link ProxyMessage#MIN_SECRET_LENGTH} bytes.
+ * Only registered players can skip authentication, others still have to register on this server.
+ */
+public class ProxyAuth {
+    public static final Identifier CHANNEL = new Identifier(ProxyMessage.CHANNEL);
+    /**
+     * Ticks to wait for proxy's answer before prompting the player to authenticate.
+     */
+    public static final int PROMPT_DELAY = 20;
+
+    // Pending challenges, answered on server thread
+    private static final ConcurrentHashMap<UUID, byte[]> challenges = new ConcurrentHashMap<>();
+
+    public static boolean isEnabled() {
+        return policy.proxyKey != null;
+    }
+
+    /**
+     * Asks proxy whether the joining player is authenticated.
+     *
+     * @param player player that has joined
+     */
+    public static void challenge(ServerPlayerEntity player) {
+        if(!isEnabled() || !isRegistered(player))
+            return;
+        ProxyMessage challenge = ProxyMessage.create(ProxyMessage.Type.CHALLENGE, player.getGameProfile().getName());
+        challenges.put(player.getUuid(), challenge.nonce);
+        send(player, challenge);
+    }
+
+    /**
+     * Handles message received on {@link #CHANNEL}. Must be called on server thread.
+     *
+     * @param player player whose connection the message came from
+     * @param data message bytes
+     */
+    public static void onMessage(ServerPlayerEntity player, byte[] data) {
+        if(!isEnabled())
+            return;
+        ProxyMessage message = ProxyMessage.decode(data, policy.proxyKey);
+        if(message == null || message.type != ProxyMessage.Type.ASSERTION || !message.player.equals(player.getGameProfile().getName())) {
+            logDebug("Ignoring invalid proxy message for {}.", player.getGameProfile().getName());
+            return;
+        }
+        // Each challenge can be answered once
+        byte[] nonce = challenges.remove(player.getUuid());
+        if(nonce == null || !MessageDigest.isEqual(nonce, message.nonce) || ((PlayerAuth) player).isAuthenticated())
+            return;
+        // Account might have been removed since the challenge was sent
+        if(!isRegistered(player))
+            return;
+
+        ((PlayerAuth) player).setAuthenticated(true);
+        player.sendMessage(new TranslatableText("text.easyauth.successfullyAuthenticated"), false);
+        AuditLog.record(AuditLog.Type.LOGIN, player.getGameProfile().getName(), player.getIp(), "proxy");
+    }
+
+    /**
+     * Tells proxy that player has authenticated on this server.
+     *
+     * @param player player that has authenticated
+     */
+    public static void notifyLogin(ServerPlayerEntity player) {
+        if(isEnabled())
+            send(player, ProxyMessage.create(ProxyMessage.Type.LOGGED_IN, player.getGameProfile().getName()));
+    }
+
+    /**
+     * Tells proxy that player isn't authenticated anymore (logged out or unregistered).
+     *
+     * @param player player that has logged out
+     */
+    public static void notifyLogout(ServerPlayerEntity player) {
+        if(isEnabled())
+            send(player, ProxyMessage.create(ProxyMessage.Type.LOGGED_OUT, player.getGameProfile().getName()));
+    }
+
+    /**
+     * Tells whether proxy's answer for the player is awaited.
+     *
+     * @param player player to check
+     * @return true if challenge was sent and not answered yet
+     */
+    public static boolean isChallenged(ServerPlayerEntity player) {
+        return challenges.containsKey(player.getUuid());
+    }
+
+    /**
+     * Forgets pending challenge of player that has left.
+     */
+    public static void onPlayerLeave(ServerPlayerEntity player) {
+        challenges.remove(player.getUuid());
+    }
+
+    /**
+     * Checks whether player would be asked to login, not to register.
+     */
+    private static boolean isRegistered(ServerPlayerEntity player) {
+        if(config.main.enableGlobalPassword)
+            return true;
+        PlayerCache playerCache = playerCacheMap.get(((PlayerAuth) player).getFakeUuid());
+        return playerCache != null && !playerCache.password.isEmpty();
+    }
+
+    private static void send(ServerPlayerEntity player, ProxyMessage message) {
+        byte[] data = message.encode(policy.proxyKey);
+        player.networkHandler.sendPacket(new CustomPayloadS2CPacket(CHANNEL, new PacketByteBuf(Unpooled.wrappedBuffer(data))));
+    }
+}
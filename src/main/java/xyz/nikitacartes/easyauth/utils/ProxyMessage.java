@@ -0,0 +1,129 @@
+package xyz.nikitacartes.easyauth.utils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Message exchanged with EasyAuth proxy plugin on {@link #CHANNEL} plugin channel.
+ * <p>
+ * Backend sends a {@link Type#CHALLENGE} with a random nonce to a joining player, proxy catches it and,
+ * if player has already authenticated on the network, answers with an {@link Type#ASSERTION} with the same nonce.
+ * Backend tells proxy about password logins and logouts with {@link Type#LOGGED_IN} and {@link Type#LOGGED_OUT}.
+ * <p>
+ * All messages are signed with HMAC-SHA256 using the secret shared by proxy and backends.
+ * This class has no Minecraft dependencies, as it's also compiled into the proxy plugin.
+ */
+public class ProxyMessage {
+    public static final String CHANNEL = "easyauth:auth";
+    public static final int NONCE_LENGTH = 16;
+    /**
+     * Minimum length of the secret in bytes, shorter secrets are refused.
+     */
+    public static final int MIN_SECRET_LENGTH = 32;
+    private static final int MAC_LENGTH = 32;
+    private static final SecureRandom random = new SecureRandom();
+
+    public enum Type {
+        CHALLENGE,
+        ASSERTION,
+        LOGGED_IN,
+        LOGGED_OUT
+    }
+
+    public final Type type;
+    public final String player;
+    public final byte[] nonce;
+
+    public ProxyMessage(Type type, String player, byte[] nonce) {
+        this.type = type;
+        this.player = player;
+        this.nonce = nonce;
+    }
+
+    /**
+     * Creates a message with a new random nonce.
+     */
+    public static ProxyMessage create(Type type, String player) {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+        return new ProxyMessage(type, player, nonce);
+    }
+
+    /**
+     * Serializes and signs the message.
+     *
+     * @param secret shared secret
+     * @return bytes to send
+     */
+    public byte[] encode(byte[] secret) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(this.type.ordinal());
+            out.writeUTF(this.player);
+            out.write(this.nonce);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] body = bytes.toByteArray();
+        byte[] message = Arrays.copyOf(body, body.length + MAC_LENGTH);
+        System.arraycopy(sign(secret, body, body.length), 0, message, body.length, MAC_LENGTH);
+        return message;
+    }
+
+    /**
+     * Parses the message and checks its signature.
+     *
+     * @param data received bytes
+     * @param secret shared secret
+     * @return parsed message, or null if it's malformed or not signed with the secret
+     */
+    public static ProxyMessage decode(byte[] data, byte[] secret) {
+        int bodyLength = data.length - MAC_LENGTH;
+        if(bodyLength <= 0)
+            return null;
+        byte[] mac = Arrays.copyOfRange(data, bodyLength, data.length);
+        if(!MessageDigest.isEqual(mac, sign(secret, data, bodyLength)))
+            return null;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, bodyLength))) {
+            int type = in.readUnsignedByte();
+            if(type >= Type.values().length)
+                return null;
+            String player = in.readUTF();
+            byte[] nonce = new byte[NONCE_LENGTH];
+            in.readFully(nonce);
+            if(in.available() != 0)
+                return null;
+            return new ProxyMessage(Type.values()[type], player, nonce);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static byte[] sign(byte[] secret, byte[] data, int length) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            mac.update(data, 0, length);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            // HmacSHA256 is always available
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets the key from secret as written in config.
+     *
+     * @return key, or null if secret is shorter than {@link #MIN_SECRET_LENGTH} bytes
+     */
+    public static byte[] getKey(String secret) {
+        byte[] key = secret.getBytes(StandardCharsets.UTF_8);
+        return key.length < MIN_SECRET_LENGTH ? null : key;
+    }
+}
@@ -0,0 +1,114 @@
+package xyz.nikitacartes.easyauth.utils;
+
+import java.util.ArrayList;
+
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
+
+/**
+ * Hashed timing wheel, used for tick based timers (e.g. kicking players that didn't log in).
+ * <p>
+ * Timers are put into a slot by their deadline, so each tick only visits a single slot
+ * instead of all scheduled timers. Scheduling and cancelling are O(1) and can be done from any thread,
+ * tasks are run on the thread calling {@link #tick()}.
+ */
+public class TimingWheel {
+    private final Timeout[] slots;
+    private final int mask;
+    private long currentTick = 0;
+
+    /**
+     * Creates the wheel.
+     *
+     * @param slots number of slots, rounded up to power of two
+     */
+    public TimingWheel(int slots) {
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.slots = new Timeout[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Schedules the task.
+     *
+     * @param delayTicks number of ticks after which task should run, at least 1
+     * @param task task to run
+     * @return timeout that can be used to cancel the task
+     */
+    public synchronized Timeout schedule(int delayTicks, Runnable task) {
+        Timeout timeout = new Timeout(this.currentTick + Math.max(1, delayTicks), task);
+        int slot = (int) (timeout.deadline & this.mask);
+        timeout.slot = slot;
+        timeout.next = this.slots[slot];
+        if(timeout.next != null)
+            timeout.next.prev = timeout;
+        this.slots[slot] = timeout;
+        return timeout;
+    }
+
+    /**
+     * Advances the wheel by one tick and runs the expired tasks.
+     */
+    public void tick() {
+        ArrayList<Timeout> expired = null;
+        synchronized (this) {
+            this.currentTick++;
+            Timeout timeout = this.slots[(int) (this.currentTick & this.mask)];
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                // Timers with later deadlines stay in slot for next round(s)
+                if(timeout.deadline <= this.currentTick) {
+                    this.unlink(timeout);
+                    if(expired == null)
+                        expired = new ArrayList<>();
+                    expired.add(timeout);
+                }
+                timeout = next;
+            }
+        }
+        // Tasks are run without holding the lock, as they might schedule new ones
+        if(expired != null) {
+            for (Timeout timeout : expired) {
+                try {
+                    timeout.task.run();
+                } catch (Exception e) {
+                    logError("Error while running timer task: " + e);
+                }
+            }
+        }
+    }
+
+    private void unlink(Timeout timeout) {
+        if(timeout.prev != null)
+            timeout.prev.next = timeout.next;
+        else
+            this.slots[timeout.slot] = timeout.next;
+        if(timeout.next != null)
+            timeout.next.prev = timeout.prev;
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.slot = -1;
+    }
+
+    public class Timeout {
+        private final long deadline;
+        private final Runnable task;
+        private Timeout prev;
+        private Timeout next;
+        private int slot = -1;
+
+        private Timeout(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        /**
+         * Cancels the task, if it hasn't run yet.
+         */
+        public void cancel() {
+            synchronized (TimingWheel.this) {
+                if(this.slot != -1)
+                    TimingWheel.this.unlink(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package xyz.nikitacartes.easyauth.utils.hashing;
+
+/**
+ * Password hashing algorithm.
+ * Implementations are registered in {@link HasherRegistry}.
+ */
+public interface Hasher {
+    /**
+     * Name of the hasher, as used in config.
+     *
+     * @return hasher name
+     */
+    String getName();
+
+    /**
+     * Prefix of hashes created by this hasher, e.g. "$argon2".
+     *
+     * @return hash prefix
+     */
+    String getPrefix();
+
+    /**
+     * Verifies password.
+     * Password array may be wiped afterwards.
+     *
+     * @param password character array of password string
+     * @param hashed hashed password
+     * @return true if password was correct
+     */
+    boolean verify(char[] password, String hashed);
+
+    /**
+     * Hashes the password with parameters from config.
+     *
+     * @param password character array of password string that needs to be hashed
+     * @return hashed password, or null if hashing failed
+     */
+    String hash(char[] password);
+
+    /**
+     * Checks whether the hash was created with other algorithm or parameters
+     * than the ones this hasher currently uses.
+     *
+     * @param hashed hashed password
+     * @return true if password should be hashed again
+     */
+    boolean needsRehash(String hashed);
+}
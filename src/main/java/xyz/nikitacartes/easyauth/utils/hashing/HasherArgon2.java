@@ -3,12 +3,25 @@ package xyz.nikitacartes.easyauth.utils.hashing;
 import de.mkammerer.argon2.Argon2;
 import de.mkammerer.argon2.Argon2Factory;
 
+import static xyz.nikitacartes.easyauth.EasyAuth.config;
 import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
 
-public class HasherArgon2 {
+public class HasherArgon2 implements Hasher {
 
-    // Creating the instance
-    private static final Argon2 HASHER = Argon2Factory.create();
+    // Native library is loaded only when Argon2 is actually used
+    private static class Holder {
+        private static final Argon2 HASHER = Argon2Factory.create();
+    }
+
+    @Override
+    public String getName() {
+        return "argon2";
+    }
+
+    @Override
+    public String getPrefix() {
+        return "$argon2";
+    }
 
     /**
      * Verifies password
@@ -17,16 +30,17 @@ public class HasherArgon2 {
      * @param hashed hashed password
      * @return true if password was correct
      */
-    public static boolean verify(char[] password, String hashed) {
+    @Override
+    public boolean verify(char[] password, String hashed) {
         try {
-            return HASHER.verify(hashed, password);
+            return Holder.HASHER.verify(hashed, password);
         }
         catch (Error e) {
             logError("Argon2 password verification error: " + e);
             return false;
         } finally {
             // Wipe confidential data
-            HASHER.wipeArray(password);
+            Holder.HASHER.wipeArray(password);
         }
     }
 
@@ -36,12 +50,29 @@ public class HasherArgon2 {
      * @param password character array of password string that needs to be hashed
      * @return string
      */
-    public static String hash(char[] password) {
+    @Override
+    public String hash(char[] password) {
         try {
-            return HASHER.hash(10, 65536, 1, password);
+            return Holder.HASHER.hash(config.experimental.argon2Iterations, config.experimental.argon2Memory, config.experimental.argon2Parallelism, password);
         } catch (Error e) {
             logError("Argon2 password hashing error: " + e);
         }
         return null;
     }
+
+    /**
+     * Checks whether the hash was created with other parameters
+     * than the ones currently set in config.
+     *
+     * @param hashed hashed password
+     * @return true if password should be hashed again
+     */
+    @Override
+    public boolean needsRehash(String hashed) {
+        // $argon2i$v=19$m=65536,t=10,p=1$salt$hash
+        String[] parts = hashed.split("\\$");
+        if(parts.length != 6 || !parts[1].equals("argon2i") || !parts[2].equals("v=19"))
+            return true;
+        return !parts[3].equals("m=" + config.experimental.argon2Memory + ",t=" + config.experimental.argon2Iterations + ",p=" + config.experimental.argon2Parallelism);
+    }
 }
@@ -0,0 +1,462 @@
+package xyz.nikitacartes.easyauth.utils.hashing;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static xyz.nikitacartes.easyauth.EasyAuth.config;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
+
+/**
+ * Pure Java Argon2 hasher, producing the same encoded hashes as {@link HasherArgon2}.
+ * <p>
+ * Instead of allocating the whole Argon2 memory for every hash (as native library does),
+ * hashing workers borrow a preallocated {@link Arena arena}, which is wiped and returned after use.
+ */
+public class HasherArgon2Java implements Hasher {
+    private static final int TYPE_D = 0;
+    private static final int TYPE_I = 1;
+    private static final int TYPE_ID = 2;
+    private static final int VERSION_10 = 0x10;
+    private static final int VERSION_13 = 0x13;
+
+    private static final int SYNC_POINTS = 4;
+    private static final int BLOCK_LONGS = 128;
+    private static final int BLOCK_BYTES = 1024;
+
+    // Same as defaults of de.mkammerer.argon2
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Base64.Encoder BASE64_ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder BASE64_DECODER = Base64.getDecoder();
+
+    /**
+     * Idle arenas, at most one per core is kept.
+     */
+    private static final int MAX_IDLE_ARENAS = Runtime.getRuntime().availableProcessors();
+    private static final ConcurrentLinkedQueue<Arena> ARENAS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger idleArenas = new AtomicInteger();
+
+    @Override
+    public String getName() {
+        return "argon2-java";
+    }
+
+    @Override
+    public String getPrefix() {
+        return "$argon2";
+    }
+
+    /**
+     * Verifies password
+     *
+     * @param password character array of password string
+     * @param hashed hashed password
+     * @return true if password was correct
+     */
+    @Override
+    public boolean verify(char[] password, String hashed) {
+        byte[] passwordBytes = toBytes(password);
+        try {
+            // $argon2i$v=19$m=65536,t=10,p=1$salt$hash
+            String[] parts = hashed.split("\\$");
+            if(parts.length != 6)
+                return false;
+            int type = switch (parts[1]) {
+                case "argon2d" -> TYPE_D;
+                case "argon2i" -> TYPE_I;
+                case "argon2id" -> TYPE_ID;
+                default -> throw new IllegalArgumentException("Unknown Argon2 type " + parts[1]);
+            };
+            int version = Integer.parseInt(parts[2].substring(2));
+            String[] params = parts[3].split(",");
+            int memory = Integer.parseInt(params[0].substring(2));
+            int iterations = Integer.parseInt(params[1].substring(2));
+            int parallelism = Integer.parseInt(params[2].substring(2));
+            byte[] salt = BASE64_DECODER.decode(parts[4]);
+            byte[] expected = BASE64_DECODER.decode(parts[5]);
+
+            byte[] actual = hashRaw(type, version, passwordBytes, salt, new byte[0], new byte[0], iterations, memory, parallelism, expected.length);
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            logError("Argon2 password verification error: " + e);
+            return false;
+        } finally {
+            // Wipe confidential data
+            Arrays.fill(password, '\0');
+            Arrays.fill(passwordBytes, (byte) 0);
+        }
+    }
+
+    /**
+     * Hashes the password
+     *
+     * @param password character array of password string that needs to be hashed
+     * @return string
+     */
+    @Override
+    public String hash(char[] password) {
+        byte[] passwordBytes = toBytes(password);
+        try {
+            int iterations = config.experimental.argon2Iterations;
+            int memory = config.experimental.argon2Memory;
+            int parallelism = config.experimental.argon2Parallelism;
+
+            byte[] salt = new byte[SALT_LENGTH];
+            RANDOM.nextBytes(salt);
+            byte[] hash = hashRaw(TYPE_I, VERSION_13, passwordBytes, salt, new byte[0], new byte[0], iterations, memory, parallelism, HASH_LENGTH);
+
+            return "$argon2i$v=" + VERSION_13 + "$m=" + memory + ",t=" + iterations + ",p=" + parallelism +
+                    "$" + BASE64_ENCODER.encodeToString(salt) + "$" + BASE64_ENCODER.encodeToString(hash);
+        } catch (IllegalArgumentException e) {
+            logError("Argon2 password hashing error: " + e);
+        } finally {
+            Arrays.fill(passwordBytes, (byte) 0);
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether the hash was created with other parameters
+     * than the ones currently set in config.
+     *
+     * @param hashed hashed password
+     * @return true if password should be hashed again
+     */
+    @Override
+    public boolean needsRehash(String hashed) {
+        String[] parts = hashed.split("\\$");
+        if(parts.length != 6 || !parts[1].equals("argon2i") || !parts[2].equals("v=19"))
+            return true;
+        return !parts[3].equals("m=" + config.experimental.argon2Memory + ",t=" + config.experimental.argon2Iterations + ",p=" + config.experimental.argon2Parallelism);
+    }
+
+    private static byte[] toBytes(char[] password) {
+        ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        byte[] bytes = Arrays.copyOfRange(encoded.array(), encoded.position(), encoded.limit());
+        Arrays.fill(encoded.array(), (byte) 0);
+        return bytes;
+    }
+
+    /**
+     * Calculates raw Argon2 tag (RFC 9106).
+     */
+    static byte[] hashRaw(int type, int version, byte[] password, byte[] salt, byte[] secret, byte[] associatedData,
+                          int iterations, int memory, int parallelism, int tagLength) {
+        if(iterations < 1 || parallelism < 1 || tagLength < 4 || memory < 8 * parallelism || salt.length < 8)
+            throw new IllegalArgumentException("Invalid Argon2 parameters");
+        if(version != VERSION_10 && version != VERSION_13)
+            throw new IllegalArgumentException("Unknown Argon2 version " + version);
+
+        int segmentLength = memory / (parallelism * SYNC_POINTS);
+        int laneLength = segmentLength * SYNC_POINTS;
+        int memoryBlocks = laneLength * parallelism;
+
+        Arena arena = borrowArena(memoryBlocks);
+        try {
+            long[] mem = arena.memory;
+            Blake2b blake = arena.blake;
+            byte[] blockBytes = arena.blockBytes;
+
+            // H0
+            byte[] h0 = new byte[64 + 8];
+            blake.reset(64);
+            blake.updateInt(parallelism);
+            blake.updateInt(tagLength);
+            blake.updateInt(memory);
+            blake.updateInt(iterations);
+            blake.updateInt(version);
+            blake.updateInt(type);
+            blake.updateInt(password.length);
+            blake.update(password);
+            blake.updateInt(salt.length);
+            blake.update(salt);
+            blake.updateInt(secret.length);
+            blake.update(secret);
+            blake.updateInt(associatedData.length);
+            blake.update(associatedData);
+            blake.digest(h0, 0);
+
+            // First two blocks of each lane
+            for(int lane = 0; lane < parallelism; lane++) {
+                for(int i = 0; i < 2; i++) {
+                    writeInt(h0, 64, i);
+                    writeInt(h0, 68, lane);
+                    hashLong(blake, h0, blockBytes, BLOCK_BYTES);
+                    bytesToBlock(blockBytes, mem, (lane * laneLength + i) * BLOCK_LONGS);
+                }
+            }
+            Arrays.fill(h0, (byte) 0);
+
+            for(int pass = 0; pass < iterations; pass++)
+                for(int slice = 0; slice < SYNC_POINTS; slice++)
+                    for(int lane = 0; lane < parallelism; lane++)
+                        fillSegment(arena, type, version, iterations, parallelism, memoryBlocks, laneLength, segmentLength, pass, slice, lane);
+
+            // Final block is XOR of last blocks of all lanes
+            long[] last = arena.r;
+            System.arraycopy(mem, (laneLength - 1) * BLOCK_LONGS, last, 0, BLOCK_LONGS);
+            for(int lane = 1; lane < parallelism; lane++) {
+                int offset = (lane * laneLength + laneLength - 1) * BLOCK_LONGS;
+                for(int i = 0; i < BLOCK_LONGS; i++)
+                    last[i] ^= mem[offset + i];
+            }
+            blockToBytes(last, blockBytes);
+
+            byte[] tag = new byte[tagLength];
+            hashLong(blake, blockBytes, tag, tagLength);
+            return tag;
+        } finally {
+            releaseArena(arena, memoryBlocks);
+        }
+    }
+
+    private static void fillSegment(Arena arena, int type, int version, int passes, int lanes, int memoryBlocks,
+                                    int laneLength, int segmentLength, int pass, int slice, int lane) {
+        long[] mem = arena.memory;
+        long[] address = arena.address;
+        long[] input = arena.input;
+        boolean dataIndependent = type == TYPE_I || (type == TYPE_ID && pass == 0 && slice < SYNC_POINTS / 2);
+
+        if(dataIndependent) {
+            Arrays.fill(input, 0L);
+            input[0] = pass;
+            input[1] = lane;
+            input[2] = slice;
+            input[3] = memoryBlocks;
+            input[4] = passes;
+            input[5] = type;
+        }
+
+        int startingIndex = 0;
+        if(pass == 0 && slice == 0) {
+            startingIndex = 2;
+            if(dataIndependent)
+                nextAddresses(arena);
+        }
+
+        int currOffset = lane * laneLength + slice * segmentLength + startingIndex;
+        int prevOffset = currOffset % laneLength == 0 ? currOffset + laneLength - 1 : currOffset - 1;
+
+        for(int i = startingIndex; i < segmentLength; i++, currOffset++, prevOffset++) {
+            if(currOffset % laneLength == 1)
+                prevOffset = currOffset - 1;
+
+            long pseudoRandom;
+            if(dataIndependent) {
+                if(i % BLOCK_LONGS == 0)
+                    nextAddresses(arena);
+                pseudoRandom = address[i % BLOCK_LONGS];
+            }
+            else
+                pseudoRandom = mem[prevOffset * BLOCK_LONGS];
+
+            int refLane = (int) ((pseudoRandom >>> 32) % lanes);
+            if(pass == 0 && slice == 0)
+                refLane = lane;
+
+            int refIndex = indexAlpha(pass, slice, i, segmentLength, laneLength, pseudoRandom & 0xFFFFFFFFL, refLane == lane);
+            boolean withXor = version != VERSION_10 && pass != 0;
+            fillBlock(arena, mem, prevOffset * BLOCK_LONGS, mem, (refLane * laneLength + refIndex) * BLOCK_LONGS, mem, currOffset * BLOCK_LONGS, withXor);
+        }
+    }
+
+    private static int indexAlpha(int pass, int slice, int index, int segmentLength, int laneLength, long pseudoRandom, boolean sameLane) {
+        long referenceAreaSize;
+        if(pass == 0) {
+            if(slice == 0)
+                referenceAreaSize = index - 1;
+            else if(sameLane)
+                referenceAreaSize = (long) slice * segmentLength + index - 1;
+            else
+                referenceAreaSize = (long) slice * segmentLength + (index == 0 ? -1 : 0);
+        }
+        else {
+            if(sameLane)
+                referenceAreaSize = laneLength - segmentLength + index - 1;
+            else
+                referenceAreaSize = laneLength - segmentLength + (index == 0 ? -1 : 0);
+        }
+
+        long relativePosition = (pseudoRandom * pseudoRandom) >>> 32;
+        relativePosition = referenceAreaSize - 1 - ((referenceAreaSize * relativePosition) >>> 32);
+
+        long startPosition = 0;
+        if(pass != 0)
+            startPosition = slice == SYNC_POINTS - 1 ? 0 : (long) (slice + 1) * segmentLength;
+
+        return (int) ((startPosition + relativePosition) % laneLength);
+    }
+
+    private static void nextAddresses(Arena arena) {
+        arena.input[6]++;
+        fillBlock(arena, arena.zero, 0, arena.input, 0, arena.address, 0, false);
+        fillBlock(arena, arena.zero, 0, arena.address, 0, arena.address, 0, false);
+    }
+
+    /**
+     * Argon2 compression function G.
+     */
+    private static void fillBlock(Arena arena, long[] prev, int prevOffset, long[] ref, int refOffset, long[] next, int nextOffset, boolean withXor) {
+        long[] r = arena.r;
+        long[] tmp = arena.tmp;
+        for(int i = 0; i < BLOCK_LONGS; i++) {
+            r[i] = prev[prevOffset + i] ^ ref[refOffset + i];
+            tmp[i] = withXor ? r[i] ^ next[nextOffset + i] : r[i];
+        }
+        // Columns
+        for(int i = 0; i < 8; i++) {
+            int b = 16 * i;
+            round(r, b, b + 1, b + 2, b + 3, b + 4, b + 5, b + 6, b + 7,
+                    b + 8, b + 9, b + 10, b + 11, b + 12, b + 13, b + 14, b + 15);
+        }
+        // Rows
+        for(int i = 0; i < 8; i++) {
+            int b = 2 * i;
+            round(r, b, b + 1, b + 16, b + 17, b + 32, b + 33, b + 48, b + 49,
+                    b + 64, b + 65, b + 80, b + 81, b + 96, b + 97, b + 112, b + 113);
+        }
+        for(int i = 0; i < BLOCK_LONGS; i++)
+            next[nextOffset + i] = tmp[i] ^ r[i];
+    }
+
+    private static void round(long[] v, int v0, int v1, int v2, int v3, int v4, int v5, int v6, int v7,
+                              int v8, int v9, int v10, int v11, int v12, int v13, int v14, int v15) {
+        g(v, v0, v4, v8, v12);
+        g(v, v1, v5, v9, v13);
+        g(v, v2, v6, v10, v14);
+        g(v, v3, v7, v11, v15);
+        g(v, v0, v5, v10, v15);
+        g(v, v1, v6, v11, v12);
+        g(v, v2, v7, v8, v13);
+        g(v, v3, v4, v9, v14);
+    }
+
+    private static void g(long[] v, int a, int b, int c, int d) {
+        v[a] = fBlaMka(v[a], v[b]);
+        v[d] = Long.rotateRight(v[d] ^ v[a], 32);
+        v[c] = fBlaMka(v[c], v[d]);
+        v[b] = Long.rotateRight(v[b] ^ v[c], 24);
+        v[a] = fBlaMka(v[a], v[b]);
+        v[d] = Long.rotateRight(v[d] ^ v[a], 16);
+        v[c] = fBlaMka(v[c], v[d]);
+        v[b] = Long.rotateRight(v[b] ^ v[c], 63);
+    }
+
+    private static long fBlaMka(long x, long y) {
+        return x + y + 2 * (x & 0xFFFFFFFFL) * (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Variable-length hash function H'.
+     */
+    private static void hashLong(Blake2b blake, byte[] in, byte[] out, int outLength) {
+        if(outLength <= 64) {
+            blake.reset(outLength);
+            blake.updateInt(outLength);
+            blake.update(in);
+            blake.digest(out, 0);
+            return;
+        }
+        byte[] v = new byte[64];
+        blake.reset(64);
+        blake.updateInt(outLength);
+        blake.update(in);
+        blake.digest(v, 0);
+        System.arraycopy(v, 0, out, 0, 32);
+        int position = 32;
+        int remaining = outLength - 32;
+        while(remaining > 64) {
+            blake.reset(64);
+            blake.update(v);
+            blake.digest(v, 0);
+            System.arraycopy(v, 0, out, position, 32);
+            position += 32;
+            remaining -= 32;
+        }
+        blake.reset(remaining);
+        blake.update(v);
+        blake.digest(out, position);
+        Arrays.fill(v, (byte) 0);
+    }
+
+    private static void writeInt(byte[] out, int offset, int value) {
+        out[offset] = (byte) value;
+        out[offset + 1] = (byte) (value >>> 8);
+        out[offset + 2] = (byte) (value >>> 16);
+        out[offset + 3] = (byte) (value >>> 24);
+    }
+
+    private static void bytesToBlock(byte[] in, long[] block, int offset) {
+        for(int i = 0; i < BLOCK_LONGS; i++) {
+            long word = 0;
+            for(int j = 7; j >= 0; j--)
+                word = (word << 8) | (in[i * 8 + j] & 0xFFL);
+            block[offset + i] = word;
+        }
+    }
+
+    private static void blockToBytes(long[] block, byte[] out) {
+        for(int i = 0; i < BLOCK_LONGS; i++)
+            for(int j = 0; j < 8; j++)
+                out[i * 8 + j] = (byte) (block[i] >>> (8 * j));
+    }
+
+    private static Arena borrowArena(int memoryBlocks) {
+        Arena arena;
+        while((arena = ARENAS.poll()) != null) {
+            idleArenas.decrementAndGet();
+            // Arenas that are too small (config was changed) are left for GC
+            if(arena.memory.length >= memoryBlocks * BLOCK_LONGS)
+                return arena;
+        }
+        return new Arena(memoryBlocks);
+    }
+
+    private static void releaseArena(Arena arena, int memoryBlocks) {
+        arena.wipe(memoryBlocks);
+        if(idleArenas.incrementAndGet() <= MAX_IDLE_ARENAS)
+            ARENAS.offer(arena);
+        else
+            idleArenas.decrementAndGet();
+    }
+
+    /**
+     * Memory of a single hashing worker.
+     * Holds Argon2 memory blocks as well as scratch blocks, so hashing doesn't allocate them.
+     */
+    private static final class Arena {
+        private final long[] memory;
+        private final long[] r = new long[BLOCK_LONGS];
+        private final long[] tmp = new long[BLOCK_LONGS];
+        private final long[] address = new long[BLOCK_LONGS];
+        private final long[] input = new long[BLOCK_LONGS];
+        private final long[] zero = new long[BLOCK_LONGS];
+        private final byte[] blockBytes = new byte[BLOCK_BYTES];
+        private final Blake2b blake = new Blake2b();
+
+        private Arena(int memoryBlocks) {
+            memory = new long[memoryBlocks * BLOCK_LONGS];
+        }
+
+        /**
+         * Zeroes the used memory, so no password derived data stays around.
+         */
+        private void wipe(int memoryBlocks) {
+            Arrays.fill(memory, 0, memoryBlocks * BLOCK_LONGS, 0L);
+            Arrays.fill(r, 0L);
+            Arrays.fill(tmp, 0L);
+            Arrays.fill(address, 0L);
+            Arrays.fill(input, 0L);
+            Arrays.fill(blockBytes, (byte) 0);
+        }
+    }
+}
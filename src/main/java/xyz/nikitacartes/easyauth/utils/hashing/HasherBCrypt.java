@@ -2,9 +2,20 @@ package xyz.nikitacartes.easyauth.utils.hashing;
 
 import at.favre.lib.crypto.bcrypt.BCrypt;
 
+import static xyz.nikitacartes.easyauth.EasyAuth.config;
 import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
 
-public class HasherBCrypt {
+public class HasherBCrypt implements Hasher {
+
+    @Override
+    public String getName() {
+        return "bcrypt";
+    }
+
+    @Override
+    public String getPrefix() {
+        return "$2";
+    }
 
     /**
      * Verifies password
@@ -13,7 +24,8 @@ public class HasherBCrypt {
      * @param hashed hashed password
      * @return true if password was correct
      */
-    public static boolean verify(char[] password, String hashed) {
+    @Override
+    public boolean verify(char[] password, String hashed) {
         try {
             return BCrypt.verifyer().verify(password, hashed).verified;
         }
@@ -29,12 +41,33 @@ public class HasherBCrypt {
      * @param password character array of password string that needs to be hashed
      * @return string
      */
-    public static String hash(char[] password) {
+    @Override
+    public String hash(char[] password) {
         try {
-            return BCrypt.withDefaults().hashToString(12, password);
+            return BCrypt.withDefaults().hashToString(config.experimental.bCryptCost, password);
         } catch (Error e) {
             logError("BCrypt password hashing error: " + e);
         }
         return null;
     }
+
+    /**
+     * Checks whether the hash was created with other cost
+     * than the one currently set in config.
+     *
+     * @param hashed hashed password
+     * @return true if password should be hashed again
+     */
+    @Override
+    public boolean needsRehash(String hashed) {
+        // $2a$12$saltAndHash
+        String[] parts = hashed.split("\\$");
+        if(parts.length != 4 || !parts[1].equals("2a"))
+            return true;
+        try {
+            return Integer.parseInt(parts[2]) != config.experimental.bCryptCost;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
 }
@@ -0,0 +1,105 @@
+package xyz.nikitacartes.easyauth.utils.hashing;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static xyz.nikitacartes.easyauth.EasyAuth.config;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
+
+/**
+ * PBKDF2-HMAC-SHA256 hasher, using JDK's own implementation.
+ * Hashes look like {@code $pbkdf2-sha256$i=310000$salt$hash}.
+ */
+public class HasherPBKDF2 implements Hasher {
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Base64.Encoder BASE64_ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder BASE64_DECODER = Base64.getDecoder();
+
+    @Override
+    public String getName() {
+        return "pbkdf2";
+    }
+
+    @Override
+    public String getPrefix() {
+        return "$pbkdf2-sha256$";
+    }
+
+    /**
+     * Verifies password
+     *
+     * @param password character array of password string
+     * @param hashed hashed password
+     * @return true if password was correct
+     */
+    @Override
+    public boolean verify(char[] password, String hashed) {
+        try {
+            String[] parts = hashed.split("\\$");
+            if(parts.length != 5)
+                return false;
+            int iterations = Integer.parseInt(parts[2].substring(2));
+            byte[] salt = BASE64_DECODER.decode(parts[3]);
+            byte[] expected = BASE64_DECODER.decode(parts[4]);
+
+            return MessageDigest.isEqual(expected, pbkdf2(password, salt, iterations, expected.length));
+        } catch (GeneralSecurityException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            logError("PBKDF2 password verification error: " + e);
+            return false;
+        } finally {
+            // Wipe confidential data
+            Arrays.fill(password, '\0');
+        }
+    }
+
+    /**
+     * Hashes the password
+     *
+     * @param password character array of password string that needs to be hashed
+     * @return string
+     */
+    @Override
+    public String hash(char[] password) {
+        try {
+            int iterations = config.experimental.pbkdf2Iterations;
+            byte[] salt = new byte[SALT_LENGTH];
+            RANDOM.nextBytes(salt);
+            byte[] hash = pbkdf2(password, salt, iterations, HASH_LENGTH);
+
+            return "$pbkdf2-sha256$i=" + iterations + "$" + BASE64_ENCODER.encodeToString(salt) + "$" + BASE64_ENCODER.encodeToString(hash);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            logError("PBKDF2 password hashing error: " + e);
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether the hash was created with other iteration count
+     * than the one currently set in config.
+     *
+     * @param hashed hashed password
+     * @return true if password should be hashed again
+     */
+    @Override
+    public boolean needsRehash(String hashed) {
+        String[] parts = hashed.split("\\$");
+        return parts.length != 5 || !parts[1].equals("pbkdf2-sha256") || !parts[2].equals("i=" + config.experimental.pbkdf2Iterations);
+    }
+
+    private static byte[] pbkdf2(char[] password, byte[] salt, int iterations, int length) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, length * 8);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
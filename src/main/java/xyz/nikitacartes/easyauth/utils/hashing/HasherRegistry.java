@@ -0,0 +1,88 @@
+package xyz.nikitacartes.easyauth.utils.hashing;
+
+import xyz.nikitacartes.easyauth.storage.AuthConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static xyz.nikitacartes.easyauth.EasyAuth.config;
+import static xyz.nikitacartes.easyauth.EasyAuth.policy;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
+
+/**
+ * Keeps available {@link Hasher hashers}, by name and by prefix of the hashes they create.
+ */
+public class HasherRegistry {
+    private static final Map<String, Hasher> hashersByName = new ConcurrentHashMap<>();
+    private static final Map<String, String> namesByPrefix = new ConcurrentHashMap<>();
+
+    static {
+        register(new HasherArgon2());
+        register(new HasherArgon2Java());
+        register(new HasherBCrypt());
+        register(new HasherScrypt());
+        register(new HasherPBKDF2());
+    }
+
+    /**
+     * Registers the hasher.
+     * If there's already a hasher for the same prefix, it's still used by default
+     * for verifying, unless the new one is set in config.
+     *
+     * @param hasher hasher to register
+     */
+    public static void register(Hasher hasher) {
+        hashersByName.put(hasher.getName(), hasher);
+        namesByPrefix.putIfAbsent(hasher.getPrefix(), hasher.getName());
+    }
+
+    /**
+     * Finds the hasher that is set in config.
+     * Called when config is compiled, so unknown names are reported only once.
+     *
+     * @param config config to read hasher from
+     * @return configured hasher, argon2 if the configured one is unknown
+     */
+    public static Hasher resolve(AuthConfig config) {
+        String name = config.experimental.useBCryptLibrary ? "bcrypt" : config.experimental.passwordHasher;
+        Hasher hasher = hashersByName.get(implementation(name, config));
+        if(hasher == null) {
+            logError("Unknown password hasher " + name + ", using argon2.");
+            return hashersByName.get(implementation("argon2", config));
+        }
+        return hasher;
+    }
+
+    /**
+     * Gets the hasher that is set in config, used for new hashes.
+     *
+     * @return configured hasher
+     */
+    public static Hasher getConfigured() {
+        return policy.hasher;
+    }
+
+    /**
+     * Gets the hasher that is able to verify the provided hash.
+     *
+     * @param hashed hashed password
+     * @return hasher for the hash, or null if hash format is unknown
+     */
+    public static Hasher forHash(String hashed) {
+        Hasher configured = getConfigured();
+        if(hashed.startsWith(configured.getPrefix()))
+            return configured;
+        for(Map.Entry<String, String> entry : namesByPrefix.entrySet()) {
+            if(hashed.startsWith(entry.getKey()))
+                return hashersByName.get(implementation(entry.getValue(), config));
+        }
+        return null;
+    }
+
+    /**
+     * Picks the implementation of the algorithm, as argon2 can be done by native library or in Java.
+     */
+    private static String implementation(String name, AuthConfig config) {
+        return name.equals("argon2") && config.experimental.useJavaArgon2 ? "argon2-java" : name;
+    }
+}
@@ -0,0 +1,249 @@
+package xyz.nikitacartes.easyauth.utils.hashing;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static xyz.nikitacartes.easyauth.EasyAuth.config;
+import static xyz.nikitacartes.easyauth.utils.EasyLogger.logError;
+
+/**
+ * Pure Java scrypt (RFC 7914) hasher.
+ * Hashes look like {@code $scrypt$ln=15,r=8,p=1$salt$hash}.
+ */
+public class HasherScrypt implements Hasher {
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+    private static final int BLOCK_SIZE = 8;
+    private static final int PARALLELISM = 1;
+    /**
+     * Largest scratch memory, in ints, 1 GiB.
+     */
+    private static final long MAX_MEMORY_INTS = 1L << 28;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Base64.Encoder BASE64_ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder BASE64_DECODER = Base64.getDecoder();
+
+    @Override
+    public String getName() {
+        return "scrypt";
+    }
+
+    @Override
+    public String getPrefix() {
+        return "$scrypt$";
+    }
+
+    /**
+     * Verifies password
+     *
+     * @param password character array of password string
+     * @param hashed hashed password
+     * @return true if password was correct
+     */
+    @Override
+    public boolean verify(char[] password, String hashed) {
+        byte[] passwordBytes = toBytes(password);
+        try {
+            String[] parts = hashed.split("\\$");
+            if(parts.length != 5)
+                return false;
+            String[] params = parts[2].split(",");
+            int logN = Integer.parseInt(params[0].substring(3));
+            int r = Integer.parseInt(params[1].substring(2));
+            int p = Integer.parseInt(params[2].substring(2));
+            byte[] salt = BASE64_DECODER.decode(parts[3]);
+            byte[] expected = BASE64_DECODER.decode(parts[4]);
+
+            return MessageDigest.isEqual(expected, scrypt(passwordBytes, salt, logN, r, p, expected.length));
+        } catch (GeneralSecurityException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            logError("Scrypt password verification error: " + e);
+            return false;
+        } finally {
+            // Wipe confidential data
+            Arrays.fill(password, '\0');
+            Arrays.fill(passwordBytes, (byte) 0);
+        }
+    }
+
+    /**
+     * Hashes the password
+     *
+     * @param password character array of password string that needs to be hashed
+     * @return string
+     */
+    @Override
+    public String hash(char[] password) {
+        byte[] passwordBytes = toBytes(password);
+        try {
+            int logN = config.experimental.scryptCost;
+            byte[] salt = new byte[SALT_LENGTH];
+            RANDOM.nextBytes(salt);
+            byte[] hash = scrypt(passwordBytes, salt, logN, BLOCK_SIZE, PARALLELISM, HASH_LENGTH);
+
+            return "$scrypt$ln=" + logN + ",r=" + BLOCK_SIZE + ",p=" + PARALLELISM +
+                    "$" + BASE64_ENCODER.encodeToString(salt) + "$" + BASE64_ENCODER.encodeToString(hash);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            logError("Scrypt password hashing error: " + e);
+        } finally {
+            Arrays.fill(passwordBytes, (byte) 0);
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether the hash was created with other cost
+     * than the one currently set in config.
+     *
+     * @param hashed hashed password
+     * @return true if password should be hashed again
+     */
+    @Override
+    public boolean needsRehash(String hashed) {
+        String[] parts = hashed.split("\\$");
+        return parts.length != 5 || !parts[1].equals("scrypt") ||
+                !parts[2].equals("ln=" + config.experimental.scryptCost + ",r=" + BLOCK_SIZE + ",p=" + PARALLELISM);
+    }
+
+    private static byte[] toBytes(char[] password) {
+        ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        byte[] bytes = Arrays.copyOfRange(encoded.array(), encoded.position(), encoded.limit());
+        Arrays.fill(encoded.array(), (byte) 0);
+        return bytes;
+    }
+
+    static byte[] scrypt(byte[] password, byte[] salt, int logN, int r, int p, int length) throws GeneralSecurityException {
+        checkParameters(logN, r, p);
+        int n = 1 << logN;
+
+        Mac mac = Mac.getInstance("HmacSHA256");
+        // Empty keys aren't accepted, but HMAC pads key with zeroes anyway
+        mac.init(new SecretKeySpec(password.length == 0 ? new byte[1] : password, "HmacSHA256"));
+
+        byte[] b = pbkdf2(mac, salt, p * 128 * r);
+        int[] xy = new int[64 * r];
+        int[] v = new int[32 * r * n];
+        int[] x = new int[16];
+        for (int i = 0; i < p; i++)
+            smix(b, i * 128 * r, r, n, v, xy, x);
+
+        byte[] result = pbkdf2(mac, b, length);
+        Arrays.fill(b, (byte) 0);
+        Arrays.fill(v, 0);
+        Arrays.fill(xy, 0);
+        Arrays.fill(x, 0);
+        return result;
+    }
+
+    /**
+     * Checks parameters against RFC 7914 limits, and that the scratch memory can be allocated,
+     * as hashes read from database can contain anything.
+     */
+    private static void checkParameters(int logN, int r, int p) {
+        if(logN < 1 || logN > 24 || r < 1 || p < 1)
+            throw new IllegalArgumentException("Invalid scrypt parameters");
+        // N < 2^(128 * r / 8)
+        if(r < 2 && logN >= 16)
+            throw new IllegalArgumentException("Scrypt cost too high for block size " + r);
+        // p <= (2^32 - 1) * 32 / (128 * r) and r * p < 2^30
+        if((long) p * 128 * r > (1L << 32) * 32 - 32 || (long) r * p >= 1 << 30)
+            throw new IllegalArgumentException("Scrypt parallelism too high");
+        // Memory is 128 * r * N bytes, kept in single int array
+        if((long) p * 128 * r > Integer.MAX_VALUE || (long) 32 * r << logN > MAX_MEMORY_INTS)
+            throw new IllegalArgumentException("Scrypt parameters need too much memory");
+    }
+
+    /**
+     * PBKDF2-HMAC-SHA256 with single iteration, as used by scrypt.
+     */
+    private static byte[] pbkdf2(Mac mac, byte[] salt, int length) {
+        byte[] out = new byte[length];
+        byte[] blockIndex = new byte[4];
+        for (int i = 1, offset = 0; offset < length; i++, offset += 32) {
+            blockIndex[0] = (byte) (i >>> 24);
+            blockIndex[1] = (byte) (i >>> 16);
+            blockIndex[2] = (byte) (i >>> 8);
+            blockIndex[3] = (byte) i;
+            mac.update(salt);
+            mac.update(blockIndex);
+            byte[] u = mac.doFinal();
+            System.arraycopy(u, 0, out, offset, Math.min(32, length - offset));
+        }
+        return out;
+    }
+
+    private static void smix(byte[] b, int offset, int r, int n, int[] v, int[] xy, int[] x) {
+        int blockInts = 32 * r;
+        for (int i = 0; i < blockInts; i++) {
+            int j = offset + i * 4;
+            xy[i] = (b[j] & 0xFF) | (b[j + 1] & 0xFF) << 8 | (b[j + 2] & 0xFF) << 16 | (b[j + 3] & 0xFF) << 24;
+        }
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(xy, 0, v, i * blockInts, blockInts);
+            blockMix(xy, x, r);
+        }
+        for (int i = 0; i < n; i++) {
+            int j = xy[(2 * r - 1) * 16] & (n - 1);
+            for (int k = 0; k < blockInts; k++)
+                xy[k] ^= v[j * blockInts + k];
+            blockMix(xy, x, r);
+        }
+        for (int i = 0; i < blockInts; i++) {
+            int j = offset + i * 4;
+            b[j] = (byte) xy[i];
+            b[j + 1] = (byte) (xy[i] >>> 8);
+            b[j + 2] = (byte) (xy[i] >>> 16);
+            b[j + 3] = (byte) (xy[i] >>> 24);
+        }
+    }
+
+    /**
+     * BlockMix of the first 32 * r ints of xy, using the rest as scratch space.
+     */
+    private static void blockMix(int[] xy, int[] x, int r) {
+        int blockInts = 32 * r;
+        System.arraycopy(xy, (2 * r - 1) * 16, x, 0, 16);
+        for (int i = 0; i < 2 * r; i++) {
+            for (int k = 0; k < 16; k++)
+                x[k] ^= xy[i * 16 + k];
+            salsa20_8(x);
+            // Even blocks go to first half, odd to second
+            int target = blockInts + ((i & 1) == 0 ? (i / 2) * 16 : (r + i / 2) * 16);
+            System.arraycopy(x, 0, xy, target, 16);
+        }
+        System.arraycopy(xy, blockInts, xy, 0, blockInts);
+    }
+
+    private static void salsa20_8(int[] b) {
+        int x0 = b[0], x1 = b[1], x2 = b[2], x3 = b[3], x4 = b[4], x5 = b[5], x6 = b[6], x7 = b[7],
+                x8 = b[8], x9 = b[9], x10 = b[10], x11 = b[11], x12 = b[12], x13 = b[13], x14 = b[14], x15 = b[15];
+        for (int i = 0; i < 8; i += 2) {
+            x4 ^= Integer.rotateLeft(x0 + x12, 7);  x8 ^= Integer.rotateLeft(x4 + x0, 9);
+            x12 ^= Integer.rotateLeft(x8 + x4, 13); x0 ^= Integer.rotateLeft(x12 + x8, 18);
+            x9 ^= Integer.rotateLeft(x5 + x1, 7);   x13 ^= Integer.rotateLeft(x9 + x5, 9);
+            x1 ^= Integer.rotateLeft(x13 + x9, 13); x5 ^= Integer.rotateLeft(x1 + x13, 18);
+            x14 ^= Integer.rotateLeft(x10 + x6, 7); x2 ^= Integer.rotateLeft(x14 + x10, 9);
+            x6 ^= Integer.rotateLeft(x2 + x14, 13); x10 ^= Integer.rotateLeft(x6 + x2, 18);
+            x3 ^= Integer.rotateLeft(x15 + x11, 7); x7 ^= Integer.rotateLeft(x3 + x15, 9);
+            x11 ^= Integer.rotateLeft(x7 + x3, 13); x15 ^= Integer.rotateLeft(x11 + x7, 18);
+            x1 ^= Integer.rotateLeft(x0 + x3, 7);   x2 ^= Integer.rotateLeft(x1 + x0, 9);
+            x3 ^= Integer.rotateLeft(x2 + x1, 13);  x0 ^= Integer.rotateLeft(x3 + x2, 18);
+            x6 ^= Integer.rotateLeft(x5 + x4, 7);   x7 ^= Integer.rotateLeft(x6 + x5, 9);
+            x4 ^= Integer.rotateLeft(x7 + x6, 13);  x5 ^= Integer.rotateLeft(x4 + x7, 18);
+            x11 ^= Integer.rotateLeft(x10 + x9, 7); x8 ^= Integer.rotateLeft(x11 + x10, 9);
+            x9 ^= Integer.rotateLeft(x8 + x11, 13); x10 ^= Integer.rotateLeft(x9 + x8, 18);
+            x12 ^= Integer.rotateLeft(x15 + x14, 7); x13 ^= Integer.rotateLeft(x12 + x15, 9);
+            x14 ^= Integer.rotateLeft(x13 + x12, 13); x15 ^= Integer.rotateLeft(x14 + x13, 18);
+        }
+        b[0] += x0; b[1] += x1; b[2] += x2; b[3] += x3; b[4] += x4; b[5] += x5; b[6] += x6; b[7] += x7;
+        b[8] += x8; b[9] += x9; b[10] += x10; b[11] += x11; b[12] += x12; b[13] += x13; b[14] += x14; b[15] += x15;
+    }
+}
@@ -0,0 +1,118 @@
+package xyz.nikitacartes.easyauth.proxy;
+
+import com.google.inject.Inject;
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.event.connection.PluginMessageEvent;
+import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.plugin.Plugin;
+import com.velocitypowered.api.plugin.annotation.DataDirectory;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
+import org.slf4j.Logger;
+import xyz.nikitacartes.easyauth.utils.ProxyMessage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Velocity companion of EasyAuth.
+ * <p>
+ * Remembers which players have authenticated on any backend server during their connection to the proxy,
+ * and vouches for them when they switch to another server, so they don't have to log in again.
+ * Backends must have the same secret set as {@code proxySecret} in their config, see {@link ProxyMessage}.
+ */
+@Plugin(
+        id = "easyauth",
+        name = "EasyAuth",
+        version = "1.0.0",
+        description = "Authenticate once per network session on EasyAuth servers",
+        authors = {"NikitaCartes"}
+)
+public class EasyAuthVelocity {
+    private static final MinecraftChannelIdentifier CHANNEL = MinecraftChannelIdentifier.from(ProxyMessage.CHANNEL);
+
+    private final ProxyServer server;
+    private final Logger logger;
+    private final Path dataDirectory;
+    private final Set<UUID> authenticated = ConcurrentHashMap.newKeySet();
+    private byte[] secret;
+
+    @Inject
+    public EasyAuthVelocity(ProxyServer server, Logger logger, @DataDirectory Path dataDirectory) {
+        this.server = server;
+        this.logger = logger;
+        this.dataDirectory = dataDirectory;
+    }
+
+    @Subscribe
+    public void onProxyInitialization(ProxyInitializeEvent event) throws IOException {
+        this.secret = ProxyMessage.getKey(this.loadSecret());
+        if(this.secret == null) {
+            this.logger.error("Secret in plugins/easyauth/secret.txt must be at least {} bytes long, EasyAuth is disabled.", ProxyMessage.MIN_SECRET_LENGTH);
+            return;
+        }
+        this.server.getChannelRegistrar().register(CHANNEL);
+    }
+
+    @Subscribe
+    public void onPluginMessage(PluginMessageEvent event) {
+        if(!CHANNEL.equals(event.getIdentifier()))
+            return;
+        // Messages of this channel are never forwarded, so players can't see or fake them
+        event.setResult(PluginMessageEvent.ForwardResult.handled());
+        if(this.secret == null || !(event.getSource() instanceof ServerConnection connection))
+            return;
+
+        Player player = connection.getPlayer();
+        ProxyMessage message = ProxyMessage.decode(event.getData(), this.secret);
+        if(message == null || !message.player.equals(player.getUsername())) {
+            this.logger.warn("Invalid message from {} for {}, is proxySecret the same as in plugins/easyauth/secret.txt?",
+                    connection.getServerInfo().getName(), player.getUsername());
+            return;
+        }
+        switch (message.type) {
+            case CHALLENGE -> {
+                if(this.authenticated.contains(player.getUniqueId())) {
+                    // Same nonce, so the answer is only valid for this challenge
+                    ProxyMessage assertion = new ProxyMessage(ProxyMessage.Type.ASSERTION, player.getUsername(), message.nonce);
+                    connection.sendPluginMessage(CHANNEL, assertion.encode(this.secret));
+                }
+            }
+            case LOGGED_IN -> this.authenticated.add(player.getUniqueId());
+            case LOGGED_OUT -> this.authenticated.remove(player.getUniqueId());
+            default -> { }
+        }
+    }
+
+    @Subscribe
+    public void onDisconnect(DisconnectEvent event) {
+        this.authenticated.remove(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Reads the shared secret, generating it on first start.
+     */
+    private String loadSecret() throws IOException {
+        Path file = this.dataDirectory.resolve("secret.txt");
+        if(Files.isRegularFile(file))
+            return Files.readString(file, StandardCharsets.UTF_8).trim();
+
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        String secret = Base64.getEncoder().encodeToString(bytes);
+        Files.createDirectories(this.dataDirectory);
+        Files.writeString(file, secret, StandardCharsets.UTF_8);
+        this.logger.info("Generated {}, set proxySecret in EasyAuth config of backend servers to its content.", file);
+        return secret;
+    }
+}